@@ -0,0 +1,110 @@
+package cs2212.westernmaps.core;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates databases of any size for benchmarks.
+ *
+ * <p>The generated databases look like the built-in one: a few buildings with
+ * several floors each, a handful of accounts, and POIs spread over every
+ * floor and layer. Some POIs are favorites of an account, and custom POIs are
+ * only visible to the account that created them. The same size always
+ * generates the same database.</p>
+ */
+public final class BenchmarkDatabases {
+    private static final int BUILDING_COUNT = 3;
+    private static final int FLOORS_PER_BUILDING = 5;
+    private static final int ACCOUNT_COUNT = 10;
+    // The size of the area that POIs are placed in, like a floor's map.
+    private static final int MAP_SIZE = 4000;
+
+    private static final String[] NAME_WORDS = {
+        "Room", "Lab", "Office", "Lecture Hall", "Washroom", "Study Space", "Cafe", "Elevator", "Stairs", "Lounge"
+    };
+    private static final String[] DESCRIPTION_WORDS = {
+        "near", "the", "main", "entrance", "quiet", "open", "late", "accessible", "shared", "printer", "water", "seating"
+    };
+
+    // Prevents instances of this class from being created.
+    private BenchmarkDatabases() {}
+
+    /**
+     * Generates a database state.
+     *
+     * @param poiCount The number of POIs in the database.
+     * @return         The generated state.
+     */
+    public static DatabaseState create(int poiCount) {
+        var random = new Random(poiCount);
+
+        var accounts = new ArrayList<Account>();
+        for (int i = 0; i < ACCOUNT_COUNT; i++) {
+            // The hashes are never checked, so they don't have to be real.
+            accounts.add(new Account("user" + i, "$31$16$" + "A".repeat(43), i == 0));
+        }
+
+        var buildings = new ArrayList<Building>();
+        var floors = new ArrayList<Floor>();
+        for (int i = 0; i < BUILDING_COUNT; i++) {
+            var buildingFloors = new ArrayList<Floor>();
+            for (int j = 0; j < FLOORS_PER_BUILDING; j++) {
+                var floor = new Floor(
+                        Integer.toString(j), "Floor " + j, Path.of("maps", "building" + i + "-floor" + j + ".svg"));
+                buildingFloors.add(floor);
+                floors.add(floor);
+            }
+            buildings.add(new Building("Building " + i, buildingFloors));
+        }
+
+        var layers = Layer.values();
+        var pois = new ArrayList<POI>(poiCount);
+        for (int i = 0; i < poiCount; i++) {
+            var layer = layers[random.nextInt(layers.length)];
+            var owner = layer == Layer.CUSTOM ? accounts.get(random.nextInt(accounts.size())) : null;
+            Set<Account> favoriteOf = random.nextInt(10) == 0
+                    ? Set.of(owner != null ? owner : accounts.get(random.nextInt(accounts.size())))
+                    : Set.of();
+            pois.add(new POI(
+                    NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " " + i,
+                    createDescription(random),
+                    random.nextInt(MAP_SIZE),
+                    random.nextInt(MAP_SIZE),
+                    favoriteOf,
+                    floors.get(random.nextInt(floors.size())),
+                    layer,
+                    owner));
+        }
+
+        return new DatabaseState(accounts, buildings, pois);
+    }
+
+    private static String createDescription(Random random) {
+        var words = new ArrayList<String>();
+        var wordCount = 3 + random.nextInt(10);
+        for (int i = 0; i < wordCount; i++) {
+            words.add(DESCRIPTION_WORDS[random.nextInt(DESCRIPTION_WORDS.length)]);
+        }
+        return String.join(" ", words);
+    }
+
+    /**
+     * Picks POIs spread evenly over a generated database, for benchmarks that
+     * update one POI at a time.
+     *
+     * @param state The generated database state.
+     * @param count The number of POIs to pick.
+     * @return      The picked POIs.
+     */
+    public static List<POI> pickPois(DatabaseState state, int count) {
+        var pois = state.pois();
+        var picked = new ArrayList<POI>(count);
+        for (int i = 0; i < count; i++) {
+            picked.add(pois.get((int) ((long) pois.size() * i / count)));
+        }
+        return picked;
+    }
+}
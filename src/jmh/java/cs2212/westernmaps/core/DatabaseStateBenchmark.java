@@ -0,0 +1,61 @@
+package cs2212.westernmaps.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading and saving databases of different sizes in each
+ * {@linkplain SnapshotFormat snapshot format}.
+ *
+ * <p>Databases are read from and written to memory, so only the time taken
+ * to parse and generate the data is measured, not the time taken by the
+ * disk.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DatabaseStateBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int poiCount;
+
+    @Param({"JSON", "BINARY", "COMPRESSED_BINARY"})
+    public SnapshotFormat format = SnapshotFormat.JSON;
+
+    private DatabaseState state = DatabaseState.EMPTY;
+    private byte[] data = new byte[0];
+
+    @Setup
+    public void setUp() throws IOException {
+        state = BenchmarkDatabases.create(poiCount);
+        var stream = new ByteArrayOutputStream();
+        format.save(state, stream);
+        data = stream.toByteArray();
+    }
+
+    @Benchmark
+    public DatabaseState load() throws IOException {
+        return format.load(new ByteArrayInputStream(data));
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        format.save(state, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,97 @@
+package cs2212.westernmaps.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the ways the map screen updates the POIs of a database with
+ * {@link DatabaseState#modifyPOIs}.
+ *
+ * <p>Each benchmark makes the same change as one of the actions on the map
+ * screen, to a different POI each time, and returns the new state without
+ * saving it.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModifyPoisBenchmark {
+    // The number of different POIs that are changed.
+    private static final int PICKED_POI_COUNT = 64;
+
+    @Param({"1000", "10000", "100000"})
+    public int poiCount;
+
+    private DatabaseState state = DatabaseState.EMPTY;
+    private List<POI> pickedPois = List.of();
+    private int nextPoi = 0;
+
+    @Setup
+    public void setUp() {
+        state = BenchmarkDatabases.create(poiCount);
+        pickedPois = BenchmarkDatabases.pickPois(state, PICKED_POI_COUNT);
+    }
+
+    // Gets the next POI to change.
+    private POI nextPoi() {
+        nextPoi = (nextPoi + 1) % pickedPois.size();
+        return pickedPois.get(nextPoi);
+    }
+
+    /** Edits a POI from its summary panel, which finds it by equality. */
+    @Benchmark
+    public DatabaseState edit() {
+        var oldPoi = nextPoi();
+        var newPoi = oldPoi.withName(oldPoi.name() + " (edited)");
+        return state.modifyPOIs(pois -> pois.stream()
+                .map(poi -> poi.equals(oldPoi) ? newPoi : poi)
+                .toList());
+    }
+
+    /** Drags a POI to a new location, which finds it by identity. */
+    @Benchmark
+    public DatabaseState move() {
+        var oldPoi = nextPoi();
+        var newPoi = oldPoi.withLocation(oldPoi.x() + 1, oldPoi.y() + 1);
+        return state.modifyPOIs(
+                pois -> pois.stream().map(poi -> poi == oldPoi ? newPoi : poi).toList());
+    }
+
+    /** Marks a POI as a favorite of an account. */
+    @Benchmark
+    public DatabaseState favorite() {
+        var oldPoi = nextPoi();
+        var newPoi = oldPoi.withFavoriteOfAccount(state.accounts().get(0), true);
+        return state.modifyPOIs(pois -> pois.stream()
+                .map(poi -> poi.equals(oldPoi) ? newPoi : poi)
+                .toList());
+    }
+
+    /** Deletes a POI. */
+    @Benchmark
+    public DatabaseState delete() {
+        var oldPoi = nextPoi();
+        return state.modifyPOIs(
+                pois -> pois.stream().filter(poi -> !poi.equals(oldPoi)).toList());
+    }
+
+    /** Creates a new POI. */
+    @Benchmark
+    public DatabaseState create() {
+        var newPoi = nextPoi().withName("New POI");
+        return state.modifyPOIs(pois -> Lists.append(pois, newPoi));
+    }
+}
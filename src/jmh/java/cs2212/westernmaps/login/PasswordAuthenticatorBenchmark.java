@@ -0,0 +1,45 @@
+package cs2212.westernmaps.login;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures hashing and checking passwords at the default cost, which is how
+ * long creating an account and logging in take.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordAuthenticatorBenchmark {
+    private static final char[] PASSWORD = "password1!".toCharArray();
+
+    private final PasswordAuthenticator authenticator = new PasswordAuthenticator();
+    private String token = "";
+
+    @Setup
+    public void setUp() {
+        token = authenticator.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return authenticator.hash(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean authenticate() {
+        return authenticator.authenticate(PASSWORD, token);
+    }
+}
@@ -0,0 +1,77 @@
+package cs2212.westernmaps.maps;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Finds the maps in {@code data/maps} for benchmarks.
+ *
+ * <p>JMH needs the values of a {@code @Param} field when the benchmarks are
+ * compiled, so map benchmarks list the map files by hand. Every benchmark
+ * calls {@link #checkMapParam} when it is set up, which fails if a map has
+ * been added to {@code data/maps} without being added to the list, so that
+ * new maps aren't silently left out of the results.</p>
+ */
+final class BenchmarkMaps {
+    private static final Path MAPS_DIRECTORY = Path.of("data", "maps");
+
+    // Prevents instances of this class from being created.
+    private BenchmarkMaps() {}
+
+    /**
+     * Gets the URI of a map.
+     *
+     * @param map The file name of the map, in {@code data/maps}.
+     * @return    The URI of the map file.
+     */
+    static URI getMapUri(String map) {
+        return MAPS_DIRECTORY.resolve(map).toUri();
+    }
+
+    /**
+     * Checks that the {@code map} parameter of a benchmark lists every map
+     * in {@code data/maps}.
+     *
+     * @param benchmark The benchmark class, which must have a public
+     *                  {@code map} field annotated with {@code @Param}.
+     * @throws IllegalStateException If a map isn't listed.
+     */
+    static void checkMapParam(Class<?> benchmark) {
+        Param param;
+        try {
+            param = benchmark.getField("map").getAnnotation(Param.class);
+        } catch (NoSuchFieldException ex) {
+            throw new IllegalArgumentException(benchmark.getSimpleName() + " has no map parameter", ex);
+        }
+        if (param == null) {
+            throw new IllegalArgumentException(benchmark.getSimpleName() + ".map isn't a parameter");
+        }
+
+        var missing = new TreeSet<>(listMaps());
+        missing.removeAll(Set.of(param.value()));
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException(
+                    "Add " + String.join(", ", missing) + " to the map parameter of " + benchmark.getSimpleName());
+        }
+    }
+
+    // Gets the file names of the maps in data/maps.
+    private static Set<String> listMaps() {
+        try (var files = Files.list(MAPS_DIRECTORY)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".svg"))
+                    .collect(Collectors.toCollection(TreeSet::new));
+        } catch (IOException ex) {
+            // This happens when the benchmarks aren't run from the project
+            // directory.
+            throw new UncheckedIOException("The maps in " + MAPS_DIRECTORY + " couldn't be listed", ex);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package cs2212.westernmaps.maps;
+
+import com.kitfox.svg.SVGDiagram;
+import com.kitfox.svg.SVGException;
+import com.kitfox.svg.SVGUniverse;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares rendering maps with {@link MapGeometry} against rendering them
+ * with SVG Salamander, which is how maps were rendered before
+ * {@code MapGeometry} was added.
+ *
+ * <p>The middle of the map is rendered into an image the size of the map at
+ * the given scale, up to the size of a window. When zoomed in, only a
+ * window-sized area is rendered, like the direct-render fallback of
+ * {@link MapRenderCache} does.</p>
+ *
+ * <p>The benchmarks must be run from the project directory, so that the maps
+ * can be found.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class MapGeometryBenchmark {
+    private static final int VIEWPORT_WIDTH = 1920;
+    private static final int VIEWPORT_HEIGHT = 1080;
+
+    // Every map in data/maps. Keep this in sync when maps are added.
+    @Param({
+        "RC-basement.svg",
+        "RC-second.svg",
+        "RC-third.svg",
+        "RC-fourth.svg",
+        "TC-first.svg",
+        "TC-second.svg",
+        "TC-third.svg",
+        "TC-fourth.svg",
+        "msc-ground.svg",
+        "msc-first.svg",
+        "msc-second.svg",
+        "msc-third.svg",
+        "msc-fourth.svg"
+    })
+    public String map;
+
+    @Param({"0.1", "0.25", "1.0", "10.0"})
+    public double scale;
+
+    // These are only created in setUp(), since creating them loads the map.
+    private @Nullable SVGDiagram diagram = null;
+    private @Nullable MapGeometry geometry = null;
+    private BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+    private double x = 0;
+    private double y = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkMaps.checkMapParam(MapGeometryBenchmark.class);
+        var mapUri = BenchmarkMaps.getMapUri(map);
+        var diagram = new SVGUniverse().getDiagram(mapUri);
+        if (diagram == null) {
+            throw new IOException("SVG Salamander couldn't load " + map);
+        }
+        this.diagram = diagram;
+        var geometry = MapGeometry.load(mapUri);
+        this.geometry = geometry;
+
+        var mapWidth = geometry.getSize().width() * scale;
+        var mapHeight = geometry.getSize().height() * scale;
+        var width = (int) Math.min(Math.ceil(mapWidth), VIEWPORT_WIDTH);
+        var height = (int) Math.min(Math.ceil(mapHeight), VIEWPORT_HEIGHT);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        x = (width - mapWidth) / 2;
+        y = (height - mapHeight) / 2;
+    }
+
+    @Benchmark
+    public BufferedImage renderWithSalamander() throws SVGException {
+        var diagram = Objects.requireNonNull(this.diagram);
+        var gfx = createGraphics();
+        gfx.translate(x, y);
+        gfx.scale(scale, scale);
+        var mapPath = diagram.getRoot().getChild("map");
+        if (mapPath != null) {
+            mapPath.setAttribute("stroke-width", 2, Double.toString(Math.min(1.0 / scale, 1.0)));
+        }
+        diagram.render(gfx);
+        gfx.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage renderWithGeometry() {
+        var gfx = createGraphics();
+        Objects.requireNonNull(geometry).render(gfx, x, y, scale);
+        gfx.dispose();
+        return image;
+    }
+
+    private Graphics2D createGraphics() {
+        var gfx = image.createGraphics();
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        gfx.setPaint(Color.WHITE);
+        gfx.fillRect(0, 0, image.getWidth(), image.getHeight());
+        gfx.setClip(0, 0, image.getWidth(), image.getHeight());
+        return gfx;
+    }
+}
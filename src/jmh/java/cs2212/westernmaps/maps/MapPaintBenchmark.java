@@ -0,0 +1,146 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares how long it takes to repaint a rendered map while panning, when
+ * drawing the grayscale image directly, when drawing a copy in the screen's
+ * format, and when drawing through a {@link ScreenImageCache}.
+ *
+ * <p>Each benchmark draws a window-sized frame, moving the map a little
+ * between frames like when it is being dragged. The frames are drawn to an
+ * accelerated image like the one Swing paints into, and the graphics pipeline
+ * is waited on after each frame, so these benchmarks need a display. On
+ * Linux, run them with
+ * {@code -Djmh.args="MapPaint -jvmArgsAppend '-Djava.awt.headless=false -Dsun.java2d.xrender=true'"}
+ * to make sure the XRender pipeline is used.</p>
+ *
+ * <p>With {@code -jvmArgsAppend -Djava.awt.headless=true}, the frames are
+ * drawn to an {@code INT_RGB} image instead. The screen cache then draws the
+ * grayscale image directly, so only the first two benchmarks differ.</p>
+ *
+ * <p>The benchmarks must be run from the project directory, so that the maps
+ * can be found.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=false")
+@State(Scope.Benchmark)
+public class MapPaintBenchmark {
+    private static final int VIEWPORT_WIDTH = 1280;
+    private static final int VIEWPORT_HEIGHT = 720;
+    // The distance the map moves between frames, like a slow drag.
+    private static final int PAN_STEP = 7;
+
+    // Every map in data/maps. Keep this in sync when maps are added.
+    @Param({
+        "RC-basement.svg",
+        "RC-second.svg",
+        "RC-third.svg",
+        "RC-fourth.svg",
+        "TC-first.svg",
+        "TC-second.svg",
+        "TC-third.svg",
+        "TC-fourth.svg",
+        "msc-ground.svg",
+        "msc-first.svg",
+        "msc-second.svg",
+        "msc-third.svg",
+        "msc-fourth.svg"
+    })
+    public String map;
+
+    private Image viewport = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+    private BufferedImage compatible = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+    private final ScreenImageCache screenImages = new ScreenImageCache();
+    // The number of frames drawn so far, and where the map is drawn in the
+    // current frame.
+    private int frame = 0;
+    private int x = 0;
+    private int y = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkMaps.checkMapParam(MapPaintBenchmark.class);
+        viewport = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB)
+                : GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice()
+                        .getDefaultConfiguration()
+                        .createCompatibleVolatileImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, Transparency.OPAQUE);
+
+        var mapUri = BenchmarkMaps.getMapUri(map);
+        var geometry = MapGeometry.load(mapUri);
+        image = ParallelMapRenderer.renderImage(mapUri, geometry.getSize(), 1.0, 1.0);
+
+        var gfx = (Graphics2D) viewport.getGraphics();
+        compatible = gfx.getDeviceConfiguration()
+                .createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.OPAQUE);
+        gfx.dispose();
+        var compatibleGfx = compatible.createGraphics();
+        compatibleGfx.drawImage(image, 0, 0, null);
+        compatibleGfx.dispose();
+    }
+
+    @TearDown
+    public void tearDown() {
+        screenImages.clear();
+    }
+
+    @Benchmark
+    public Image drawGrayscale() {
+        var gfx = startFrame();
+        gfx.drawImage(image, x, y, null);
+        return finishFrame(gfx);
+    }
+
+    @Benchmark
+    public Image drawCompatible() {
+        var gfx = startFrame();
+        gfx.drawImage(compatible, x, y, null);
+        return finishFrame(gfx);
+    }
+
+    @Benchmark
+    public Image drawScreenCache() {
+        var gfx = startFrame();
+        screenImages.draw(gfx, image, x, y, null);
+        return finishFrame(gfx);
+    }
+
+    private Graphics2D startFrame() {
+        frame++;
+        x = -(frame * PAN_STEP % VIEWPORT_WIDTH);
+        y = -(frame * PAN_STEP % VIEWPORT_HEIGHT);
+        return (Graphics2D) viewport.getGraphics();
+    }
+
+    private Image finishFrame(Graphics2D gfx) {
+        gfx.dispose();
+        // Wait for the graphics pipeline to finish drawing.
+        Toolkit.getDefaultToolkit().sync();
+        return viewport;
+    }
+}
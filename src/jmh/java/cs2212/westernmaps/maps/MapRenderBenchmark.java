@@ -0,0 +1,120 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering every map in {@code data/maps} at several zoom levels.
+ *
+ * <p>{@link #renderImage} renders a whole map into a new image, like
+ * {@link MapRenderCache} does for each pyramid level. {@link #drawViewport}
+ * draws a window-sized part of a map through a {@link MapRenderCache} whose
+ * tiles have all been rendered, like every repaint of the map viewer
+ * does.</p>
+ *
+ * <p>The benchmarks must be run from the project directory, so that the maps
+ * can be found. The maps are listed by hand, and setting up fails if a map in
+ * {@code data/maps} is missing from the list (see {@link BenchmarkMaps}).</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class MapRenderBenchmark {
+    private static final int VIEWPORT_WIDTH = 1280;
+    private static final int VIEWPORT_HEIGHT = 720;
+    // The longest time to wait for the tiles of the viewport to be rendered.
+    private static final long TILE_TIMEOUT_MS = 60_000;
+
+    // Every map in data/maps. Keep this in sync when maps are added.
+    @Param({
+        "RC-basement.svg",
+        "RC-second.svg",
+        "RC-third.svg",
+        "RC-fourth.svg",
+        "TC-first.svg",
+        "TC-second.svg",
+        "TC-third.svg",
+        "TC-fourth.svg",
+        "msc-ground.svg",
+        "msc-first.svg",
+        "msc-second.svg",
+        "msc-third.svg",
+        "msc-fourth.svg"
+    })
+    public String map;
+
+    @Param({"0.25", "0.5", "1.0", "2.0"})
+    public double scale;
+
+    private URI mapUri = URI.create("file:/");
+    private MapSize mapSize = new MapSize(0, 0);
+    // This is only created in setUp(), since creating it loads the map.
+    private @Nullable MapRenderCache renderCache = null;
+    private BufferedImage viewport = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        BenchmarkMaps.checkMapParam(MapRenderBenchmark.class);
+        mapUri = BenchmarkMaps.getMapUri(map);
+        mapSize = MapRenderCache.loadGeometry(mapUri).getSize();
+        var renderCache = new MapRenderCache(mapUri, scale, () -> {});
+        this.renderCache = renderCache;
+        viewport = new BufferedImage(VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+        // Keep drawing the viewport until none of its tiles are missing.
+        var deadline = System.currentTimeMillis() + TILE_TIMEOUT_MS;
+        while (true) {
+            var misses = renderCache.getTileMisses();
+            drawViewport();
+            if (renderCache.getTileMisses() == misses) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("The tiles of " + map + " weren't rendered in time.");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        var renderCache = Objects.requireNonNull(this.renderCache);
+        renderCache.cancelPendingWork();
+        renderCache.releaseScreenImages();
+        MapTileCache.getShared().clear();
+    }
+
+    @Benchmark
+    public BufferedImage renderImage() {
+        return ParallelMapRenderer.renderImage(mapUri, mapSize, scale, 1.0);
+    }
+
+    @Benchmark
+    public BufferedImage drawViewport() {
+        // Draw the middle of the map.
+        var x = (int) Math.round((VIEWPORT_WIDTH - mapSize.width() * scale) / 2);
+        var y = (int) Math.round((VIEWPORT_HEIGHT - mapSize.height() * scale) / 2);
+        var gfx = viewport.createGraphics();
+        Objects.requireNonNull(renderCache).render(gfx, x, y, null);
+        gfx.dispose();
+        return viewport;
+    }
+}
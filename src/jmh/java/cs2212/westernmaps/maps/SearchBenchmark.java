@@ -0,0 +1,54 @@
+package cs2212.westernmaps.maps;
+
+import cs2212.westernmaps.core.BenchmarkDatabases;
+import cs2212.westernmaps.core.Building;
+import cs2212.westernmaps.core.DatabaseState;
+import cs2212.westernmaps.core.POI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures searching the POIs of a building from the search bar of the map
+ * screen.
+ *
+ * <p>The queries cover a word that matches many POIs, two words that narrow
+ * the results down, and a word that matches nothing.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int poiCount;
+
+    @Param({"room", "washroom quiet", "nothing"})
+    public String query;
+
+    private DatabaseState state = DatabaseState.EMPTY;
+    private Building building = new Building("", List.of());
+
+    @Setup
+    public void setUp() {
+        state = BenchmarkDatabases.create(poiCount);
+        building = state.buildings().get(0);
+    }
+
+    @Benchmark
+    public List<POI> search() {
+        return MapPanel.getSearchResults(query.split(" "), state.pois(), building);
+    }
+}
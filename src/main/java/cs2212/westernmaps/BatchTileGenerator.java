@@ -0,0 +1,114 @@
+package cs2212.westernmaps;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import cs2212.westernmaps.core.Database;
+import cs2212.westernmaps.maps.MapTileExporter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A command-line program that renders the map tiles of every floor of every
+ * building ahead of time, without a display.
+ *
+ * <p>Run it from the project directory with the output directory as the first
+ * argument. The data directory can be given as the second argument, and
+ * otherwise defaults to the {@linkplain Main#getDataDirectory() application's
+ * data directory}. The scale of the display the tiles are for can be given as
+ * the third argument, and defaults to {@code 1.0}.</p>
+ *
+ * <p>The tiles of each map are written to a directory named after its SVG
+ * file, as described by {@link MapTileExporter}. A {@code manifest.json} file
+ * in the output directory lists every building and floor, along with the
+ * directory of its tiles and the size of each pyramid level.</p>
+ */
+public final class BatchTileGenerator {
+    private BatchTileGenerator() {}
+
+    /**
+     * The main runnable function for the tile generator.
+     *
+     * @param args The output directory, and optionally the data directory and
+     *             the device scale.
+     * @throws IOException If the database could not be loaded, or the tiles
+     *                     or manifest could not be written.
+     */
+    public static void main(String... args) throws IOException {
+        // This must be set before anything from AWT is used.
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: BatchTileGenerator <output directory> [data directory] [device scale]");
+            System.exit(2);
+        }
+        var outputDirectory = Path.of(args[0]);
+        var dataDirectory = args.length > 1 ? Path.of(args[1]) : Main.getDataDirectory();
+        var deviceScale = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        var database = Database.openDirectory(dataDirectory);
+        Files.createDirectories(outputDirectory);
+
+        // Floors of different buildings may share a map, which is only
+        // rendered once.
+        var exportedMaps = new LinkedHashMap<Path, MapTileExporter.ExportedMap>();
+        var buildings = new ArrayList<ManifestBuilding>();
+        for (var building : database.getCurrentState().buildings()) {
+            var floors = new ArrayList<ManifestFloor>();
+            for (var floor : building.floors()) {
+                var mapUri = database.resolveFloorMapUri(floor);
+                var tileDirectory = Path.of(getBaseName(floor.mapPath()));
+
+                var exportedMap = exportedMaps.get(tileDirectory);
+                if (exportedMap == null) {
+                    var start = System.nanoTime();
+                    exportedMap = MapTileExporter.export(mapUri, outputDirectory.resolve(tileDirectory), deviceScale);
+                    exportedMaps.put(tileDirectory, exportedMap);
+                    System.out.printf(
+                            "%s, %s: %d tiles in %.1f s%n",
+                            building.name(),
+                            floor.longName(),
+                            exportedMap.tileCount(),
+                            (System.nanoTime() - start) / 1e9);
+                }
+                floors.add(new ManifestFloor(
+                        floor.shortName(),
+                        floor.longName(),
+                        floor.mapPath().toString(),
+                        tileDirectory.toString(),
+                        exportedMap));
+            }
+            buildings.add(new ManifestBuilding(building.name(), floors));
+        }
+
+        var manifestFile = outputDirectory.resolve("manifest.json");
+        JsonMapper.builder()
+                .configure(SerializationFeature.INDENT_OUTPUT, true)
+                .build()
+                .writeValue(manifestFile.toFile(), Map.of("buildings", buildings));
+        System.out.println("Wrote " + manifestFile);
+    }
+
+    // Gets the name of a map file without its extension.
+    private static String getBaseName(Path mapPath) {
+        var name = mapPath.getFileName().toString();
+        var extensionIndex = name.lastIndexOf('.');
+        return extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+    }
+
+    // The entry of a building in the manifest.
+    private record ManifestBuilding(String name, List<ManifestFloor> floors) {}
+
+    // The entry of a floor in the manifest, including where its tiles are,
+    // relative to the manifest.
+    private record ManifestFloor(
+            String shortName,
+            String longName,
+            String mapPath,
+            String tileDirectory,
+            MapTileExporter.ExportedMap tiles) {}
+}
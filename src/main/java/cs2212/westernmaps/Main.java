@@ -7,9 +7,17 @@ import com.formdev.flatlaf.extras.FlatInspector;
 import com.formdev.flatlaf.extras.FlatUIDefaultsInspector;
 import com.formdev.flatlaf.fonts.inter.FlatInterFont;
 import cs2212.westernmaps.core.Database;
+import cs2212.westernmaps.core.SnapshotFormat;
+import cs2212.westernmaps.maps.MapDiskCache;
+import cs2212.westernmaps.maps.MapRenderCache;
+import cs2212.westernmaps.maps.RenderStats;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.swing.SwingUtilities;
 
 /**
@@ -55,6 +63,12 @@ public final class Main {
                 FlatUIDefaultsInspector.install("ctrl shift alt Y");
             }
 
+            // Let the render statistics overlay be shown if they are being
+            // recorded, which is also requested via a Java system property.
+            if (RenderStats.isEnabled()) {
+                RenderStats.installOverlayToggle("ctrl shift alt R");
+            }
+
             // Load the database.
             Database database;
             try {
@@ -63,12 +77,53 @@ public final class Main {
                 throw new RuntimeException(ex);
             }
 
+            // Let the database be saved in another format, which is also
+            // requested via a Java system property.
+            var snapshotFormatName = System.getProperty("cs2212.westernmaps.snapshotFormat");
+            if (snapshotFormatName != null) {
+                var snapshotFormat = findSnapshotFormat(snapshotFormatName);
+                if (snapshotFormat != null) {
+                    database.setSnapshotFormat(snapshotFormat);
+                } else {
+                    var validNames = Arrays.stream(SnapshotFormat.values())
+                            .map(format -> format.name().toLowerCase(Locale.ROOT))
+                            .collect(Collectors.joining(", "));
+                    System.out.println("Error: Unknown snapshot format \"" + snapshotFormatName
+                            + "\". Valid formats are " + validNames + ".");
+                }
+            }
+
+            // Finish saving changes if the application is stopped without
+            // closing the window first.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    database.save();
+                } catch (IOException ex) {
+                    System.out.println("Error: Couldn't save changes to the database.");
+                }
+            }));
+
+            // Keep rendered maps in the data directory, so they don't have to
+            // be rendered again the next time the application starts.
+            MapRenderCache.setDiskCache(new MapDiskCache(getDataDirectory().resolve("cache")));
+
             // Create the main window.
             var window = new MainWindow(database);
             window.setVisible(true);
         });
     }
 
+    // Finds the snapshot format with a name, ignoring case. Returns null if
+    // there isn't one.
+    private static @Nullable SnapshotFormat findSnapshotFormat(String name) {
+        for (var format : SnapshotFormat.values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
     /**
      * Gets the directory that will be used to store user-writable data.
      *
@@ -88,6 +143,22 @@ public final class Main {
         return Path.of(Objects.requireNonNullElse(directoryProperty, "./data"));
     }
 
+    /**
+     * Gets the file that render statistics are saved to when the application
+     * exits, if they are {@linkplain RenderStats#isEnabled() enabled}.
+     *
+     * <p>If the {@code cs2212.westernmaps.renderStatsFile} system property is
+     * set, the value will be used as the path of the file. Otherwise, the file
+     * is named {@code render-stats.csv} in the
+     * {@linkplain #getDataDirectory() data directory}.</p>
+     *
+     * @return The path to the render statistics file.
+     */
+    public static Path getRenderStatsFile() {
+        var fileProperty = System.getProperty("cs2212.westernmaps.renderStatsFile");
+        return fileProperty != null ? Path.of(fileProperty) : getDataDirectory().resolve("render-stats.csv");
+    }
+
     /**
      * Set some Java system properties that visually integrate the application
      * with macOS.
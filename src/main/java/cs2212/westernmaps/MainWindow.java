@@ -8,8 +8,12 @@ import cs2212.westernmaps.help.HelpWindow;
 import cs2212.westernmaps.login.CreateAccountPanel;
 import cs2212.westernmaps.login.LoginPanel;
 import cs2212.westernmaps.maps.MapPanel;
+import cs2212.westernmaps.maps.RenderScheduler;
+import cs2212.westernmaps.maps.RenderStats;
 import cs2212.westernmaps.select.BuildingSelectPanel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -68,11 +72,10 @@ public final class MainWindow extends JFrame {
                             accounts,
                             database.getCurrentState().buildings(),
                             database.getCurrentState().pois()));
-            try {
-                database.save();
-            } catch (IOException ex) {
+            database.saveAsync().exceptionally(ex -> {
                 System.out.println("Error: Couldn't save new account to the database.");
-            }
+                return null;
+            });
             changeTo(loginPanel);
         });
 
@@ -119,6 +122,28 @@ public final class MainWindow extends JFrame {
 
         // setting up the window
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                // Stop rendering maps that will never be shown.
+                RenderScheduler.getShared().shutdown();
+
+                // Wait for any changes that are still being saved.
+                try {
+                    database.save();
+                } catch (IOException ex) {
+                    System.out.println("Error: Couldn't save changes to the database.");
+                }
+
+                if (RenderStats.isEnabled()) {
+                    try {
+                        RenderStats.getShared().writeCsv(Main.getRenderStatsFile());
+                    } catch (IOException ex) {
+                        System.out.println("Error: Couldn't save the render statistics.");
+                    }
+                }
+            }
+        });
         setContentPane(cardPanel);
         setPreferredSize(new Dimension(1280, 720));
         pack();
@@ -135,6 +160,9 @@ public final class MainWindow extends JFrame {
         }
 
         setTitle(titleBuilder.toString());
+        // Remove the previous panel, since adding a new one under the same
+        // name would otherwise keep it (and any map it shows) alive.
+        cardPanel.removeAll();
         cardPanel.add(panel, "Current");
         cardLayout.show(cardPanel, "Current");
     }
@@ -0,0 +1,567 @@
+package cs2212.westernmaps.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes database states in a compact binary format, which is much
+ * faster to load than JSON.
+ *
+ * <p>A file starts with a fixed header: the magic bytes {@code WMDB}, the
+ * format version, a flag that is set if the body is compressed with Deflate,
+ * the size of the body before and after compression, and the CRC-32 checksum
+ * of the body as it is stored. A file whose header or checksum doesn't match
+ * is rejected as a whole, so a damaged file is never partly loaded.</p>
+ *
+ * <p>The body is a sequence of records, each made of a one-byte tag, the
+ * length of its content in bytes, and the content. Records with unknown tags
+ * are skipped. The content of records is made of variable-length integers,
+ * which take one byte for values under 128:</p>
+ *
+ * <ol>
+ *     <li>{@code STRINGS}: Every string in the database, each stored once, as
+ *     UTF-8 bytes. Everything else refers to strings by their index in this
+ *     table.</li>
+ *     <li>{@code ACCOUNT_TABLE} and {@code FLOOR_TABLE}: Every distinct
+ *     account and floor, including ones that are only referred to by POIs.
+ *     Everything else refers to accounts and floors by their index in these
+ *     tables, so equal accounts and floors are shared when loading, like
+ *     JSON object IDs.</li>
+ *     <li>{@code ACCOUNTS}, {@code BUILDINGS} and {@code POIS}: The contents
+ *     of the database state.</li>
+ * </ol>
+ */
+final class BinaryDatabaseFormat {
+    private static final byte[] MAGIC = {'W', 'M', 'D', 'B'};
+    private static final int VERSION = 1;
+    private static final int FLAG_COMPRESSED = 1;
+    // The size of the header: the magic bytes, version, flags, both sizes of
+    // the body and its checksum.
+    static final int HEADER_SIZE = MAGIC.length + 2 + 2 + 4 + 4 + 4;
+
+    private static final byte STRINGS = 1;
+    private static final byte ACCOUNT_TABLE = 2;
+    private static final byte FLOOR_TABLE = 3;
+    private static final byte ACCOUNTS = 4;
+    private static final byte BUILDINGS = 5;
+    private static final byte POIS = 6;
+
+    // Prevents instances of this class from being created.
+    private BinaryDatabaseFormat() {}
+
+    /**
+     * Checks whether some data starts like a file in this format, without
+     * checking whether the rest of it is valid.
+     *
+     * @param bytes The data to check.
+     * @return      Whether the data starts with the magic bytes.
+     */
+    static boolean hasMagic(byte[] bytes) {
+        return bytes.length >= MAGIC.length && Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Checks whether some data in this format is compressed, without checking
+     * whether it is valid.
+     *
+     * @param bytes The data to check, which must {@linkplain #hasMagic start
+     *              with the magic bytes}.
+     * @return      Whether the compressed flag is set.
+     */
+    static boolean isCompressed(byte[] bytes) {
+        return bytes.length >= HEADER_SIZE
+                && (ByteBuffer.wrap(bytes).getShort(MAGIC.length + 2) & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Loads a database state from an input stream.
+     *
+     * @param stream       The input stream to read from.
+     * @return             The state that was read.
+     * @throws IOException If the data could not be read, or isn't a valid
+     *                     database in this format.
+     */
+    static DatabaseState load(InputStream stream) throws IOException {
+        return load(stream.readAllBytes());
+    }
+
+    /**
+     * Loads a database state from the content of a file.
+     *
+     * @param bytes        The content of the file.
+     * @return             The state that was read.
+     * @throws IOException If the content isn't a valid database in this
+     *                     format.
+     */
+    static DatabaseState load(byte[] bytes) throws IOException {
+        if (bytes.length < HEADER_SIZE || !hasMagic(bytes)) {
+            throw new IOException("Not a binary database file.");
+        }
+        var header = ByteBuffer.wrap(bytes, MAGIC.length, HEADER_SIZE - MAGIC.length);
+        var version = header.getShort();
+        var flags = header.getShort();
+        var bodySize = header.getInt();
+        var storedSize = header.getInt();
+        var checksum = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary database version " + version + ".");
+        }
+        var compressed = (flags & FLAG_COMPRESSED) != 0;
+        if (storedSize != bytes.length - HEADER_SIZE || bodySize < 0 || (!compressed && bodySize != storedSize)) {
+            throw new IOException("The binary database file is truncated.");
+        }
+
+        var crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, storedSize);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("The binary database file is damaged.");
+        }
+
+        ByteBuffer body;
+        if (compressed) {
+            body = ByteBuffer.wrap(inflate(bytes, HEADER_SIZE, storedSize, bodySize));
+        } else {
+            body = ByteBuffer.wrap(bytes, HEADER_SIZE, storedSize).slice();
+        }
+
+        try {
+            return new Reader(body).readState();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            // The checksum matched, so the file was written wrongly.
+            throw new IOException("The binary database file is invalid.", ex);
+        }
+    }
+
+    /**
+     * Saves a database state to an output stream.
+     *
+     * @param state        The state to save.
+     * @param stream       The output stream to write to.
+     * @param compress     Whether to compress the data, which makes it
+     *                     smaller but slower to save and load.
+     * @throws IOException If the data could not be written.
+     */
+    static void save(DatabaseState state, OutputStream stream, boolean compress) throws IOException {
+        var body = new Writer().writeState(state);
+        var bodyBytes = body.buffer;
+        var bodySize = body.size;
+
+        byte[] stored = bodyBytes;
+        var storedSize = bodySize;
+        if (compress) {
+            var compressed = deflate(bodyBytes, bodySize);
+            stored = compressed.toByteArray();
+            storedSize = stored.length;
+        }
+
+        var crc = new CRC32();
+        crc.update(stored, 0, storedSize);
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putShort((short) VERSION);
+        header.putShort((short) (compress ? FLAG_COMPRESSED : 0));
+        header.putInt(bodySize);
+        header.putInt(storedSize);
+        header.putInt((int) crc.getValue());
+
+        stream.write(header.array());
+        stream.write(stored, 0, storedSize);
+    }
+
+    private static ByteArrayOutputStream deflate(byte[] bytes, int length) {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, 0, length);
+            deflater.finish();
+            var output = new ByteArrayOutputStream(length / 2);
+            var buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                var count = deflater.deflate(buffer);
+                output.write(buffer, 0, count);
+            }
+            return output;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length, int inflatedLength) throws IOException {
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            var output = new byte[inflatedLength];
+            var count = 0;
+            while (count < inflatedLength && !inflater.finished()) {
+                var inflated = inflater.inflate(output, count, inflatedLength - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+            if (count != inflatedLength || !inflater.finished()) {
+                throw new IOException("The binary database file is damaged.");
+            }
+            return output;
+        } catch (DataFormatException ex) {
+            throw new IOException("The binary database file is damaged.", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Encodes a state into records. Strings are collected while the other
+    // records are written, and written before them at the end.
+    private static final class Writer {
+        private byte[] buffer = new byte[64 * 1024];
+        private int size = 0;
+        // The start of the record that is being written.
+        private int recordStart = -1;
+
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private Writer writeState(DatabaseState state) {
+            // Collect every account and floor, including the ones that are
+            // only referred to by POIs.
+            var accountIndices = new HashMap<Account, Integer>();
+            var accounts = new ArrayList<Account>();
+            var floorIndices = new HashMap<Floor, Integer>();
+            var floors = new ArrayList<Floor>();
+            for (var account : state.accounts()) {
+                addToTable(account, accounts, accountIndices);
+            }
+            for (var building : state.buildings()) {
+                for (var floor : building.floors()) {
+                    addToTable(floor, floors, floorIndices);
+                }
+            }
+            for (var poi : state.pois()) {
+                addToTable(poi.floor(), floors, floorIndices);
+                poi.favoriteOf().forEach(account -> addToTable(account, accounts, accountIndices));
+                var onlyVisibleTo = poi.onlyVisibleTo();
+                if (onlyVisibleTo != null) {
+                    addToTable(onlyVisibleTo, accounts, accountIndices);
+                }
+            }
+
+            var records = new Writer();
+            records.startRecord(ACCOUNT_TABLE);
+            records.writeVarInt(accounts.size());
+            for (var account : accounts) {
+                records.writeString(account.username(), this);
+                records.writeString(account.passwordHash(), this);
+                records.writeByte(account.developer() ? 1 : 0);
+            }
+            records.endRecord();
+
+            records.startRecord(FLOOR_TABLE);
+            records.writeVarInt(floors.size());
+            for (var floor : floors) {
+                records.writeString(floor.shortName(), this);
+                records.writeString(floor.longName(), this);
+                records.writeString(floor.mapPath().toString(), this);
+            }
+            records.endRecord();
+
+            records.startRecord(ACCOUNTS);
+            records.writeVarInt(state.accounts().size());
+            for (var account : state.accounts()) {
+                records.writeVarInt(Objects.requireNonNull(accountIndices.get(account)));
+            }
+            records.endRecord();
+
+            records.startRecord(BUILDINGS);
+            records.writeVarInt(state.buildings().size());
+            for (var building : state.buildings()) {
+                records.writeString(building.name(), this);
+                records.writeVarInt(building.floors().size());
+                for (var floor : building.floors()) {
+                    records.writeVarInt(Objects.requireNonNull(floorIndices.get(floor)));
+                }
+            }
+            records.endRecord();
+
+            records.startRecord(POIS);
+            records.writeVarInt(state.pois().size());
+            for (var poi : state.pois()) {
+                records.writeString(poi.name(), this);
+                records.writeString(poi.description(), this);
+                records.writeSignedVarInt(poi.x());
+                records.writeSignedVarInt(poi.y());
+                records.writeVarInt(poi.favoriteOf().size());
+                for (var account : poi.favoriteOf()) {
+                    records.writeVarInt(Objects.requireNonNull(accountIndices.get(account)));
+                }
+                records.writeVarInt(Objects.requireNonNull(floorIndices.get(poi.floor())));
+                records.writeString(poi.layer().name(), this);
+                // Zero means the POI is visible to everyone.
+                var onlyVisibleTo = poi.onlyVisibleTo();
+                if (onlyVisibleTo != null) {
+                    records.writeVarInt(Objects.requireNonNull(accountIndices.get(onlyVisibleTo)) + 1);
+                } else {
+                    records.writeVarInt(0);
+                }
+            }
+            records.endRecord();
+
+            // The string table has to come first, so the reader knows every
+            // string before it is referred to.
+            startRecord(STRINGS);
+            writeVarInt(strings.size());
+            for (var string : strings) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+            }
+            endRecord();
+            writeBytes(records.buffer, 0, records.size);
+            return this;
+        }
+
+        private static <T> void addToTable(T value, List<T> table, Map<T, Integer> indices) {
+            if (indices.putIfAbsent(value, table.size()) == null) {
+                table.add(value);
+            }
+        }
+
+        // Writes the index of a string in the table of another writer, adding
+        // it to the table if needed.
+        private void writeString(String string, Writer table) {
+            var index = table.stringIndices.get(string);
+            if (index == null) {
+                index = table.strings.size();
+                table.stringIndices.put(string, index);
+                table.strings.add(string);
+            }
+            writeVarInt(index);
+        }
+
+        private void startRecord(byte tag) {
+            writeByte(tag);
+            // Leave space for the length, which isn't known until the end.
+            ensureCapacity(4);
+            size += 4;
+            recordStart = size;
+        }
+
+        private void endRecord() {
+            var length = size - recordStart;
+            ByteBuffer.wrap(buffer, recordStart - 4, 4).putInt(length);
+            recordStart = -1;
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        private void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        // Writes an integer that may be negative, zigzag-encoded so that small
+        // negative numbers stay small.
+        private void writeSignedVarInt(int value) {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    // Decodes the records of a body.
+    private static final class Reader {
+        private final ByteBuffer body;
+
+        private String[] strings = new String[0];
+        private Layer[] layers = new Layer[0];
+        private Account[] accountTable = new Account[0];
+        private Floor[] floorTable = new Floor[0];
+        private List<Account> accounts = List.of();
+        private List<Building> buildings = List.of();
+        private List<POI> pois = List.of();
+
+        private Reader(ByteBuffer body) {
+            this.body = body;
+        }
+
+        private DatabaseState readState() throws IOException {
+            var found = new HashSet<Byte>();
+            while (body.hasRemaining()) {
+                var tag = body.get();
+                var length = body.getInt();
+                if (length < 0 || length > body.remaining()) {
+                    throw new IOException("The binary database file is invalid.");
+                }
+                var end = body.position() + length;
+                if (!found.add(tag)) {
+                    throw new IOException("The binary database file has a duplicate record.");
+                }
+                switch (tag) {
+                    case STRINGS -> readStrings();
+                    case ACCOUNT_TABLE -> readAccountTable();
+                    case FLOOR_TABLE -> readFloorTable();
+                    case ACCOUNTS -> readAccounts();
+                    case BUILDINGS -> readBuildings();
+                    case POIS -> readPois();
+                    default -> {
+                        // Records from newer versions are skipped.
+                    }
+                }
+                if (body.position() > end) {
+                    throw new IOException("The binary database file is invalid.");
+                }
+                body.position(end);
+            }
+
+            if (!found.containsAll(Set.of(STRINGS, ACCOUNT_TABLE, FLOOR_TABLE, ACCOUNTS, BUILDINGS, POIS))) {
+                throw new IOException("The binary database file is missing a record.");
+            }
+            return new DatabaseState(accounts, buildings, pois);
+        }
+
+        private void readStrings() {
+            strings = new String[readVarInt()];
+            layers = new Layer[strings.length];
+            var array = body.array();
+            for (int i = 0; i < strings.length; i++) {
+                var length = readVarInt();
+                strings[i] = new String(array, body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+                body.position(body.position() + length);
+            }
+        }
+
+        private void readAccountTable() {
+            accountTable = new Account[readVarInt()];
+            for (int i = 0; i < accountTable.length; i++) {
+                accountTable[i] = new Account(readString(), readString(), body.get() != 0);
+            }
+        }
+
+        private void readFloorTable() {
+            floorTable = new Floor[readVarInt()];
+            for (int i = 0; i < floorTable.length; i++) {
+                floorTable[i] = new Floor(readString(), readString(), Path.of(readString()));
+            }
+        }
+
+        private void readAccounts() {
+            var result = new Account[readVarInt()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = accountTable[readVarInt()];
+            }
+            accounts = Arrays.asList(result);
+        }
+
+        private void readBuildings() {
+            var result = new Building[readVarInt()];
+            for (int i = 0; i < result.length; i++) {
+                var name = readString();
+                var floors = new Floor[readVarInt()];
+                for (int j = 0; j < floors.length; j++) {
+                    floors[j] = floorTable[readVarInt()];
+                }
+                result[i] = new Building(name, Arrays.asList(floors));
+            }
+            buildings = Arrays.asList(result);
+        }
+
+        private void readPois() {
+            var result = new POI[readVarInt()];
+            for (int i = 0; i < result.length; i++) {
+                var name = readString();
+                var description = readString();
+                var x = readSignedVarInt();
+                var y = readSignedVarInt();
+                var favoriteCount = readVarInt();
+                Set<Account> favoriteOf;
+                if (favoriteCount == 0) {
+                    favoriteOf = Set.of();
+                } else {
+                    var favoriteAccounts = new Account[favoriteCount];
+                    for (int j = 0; j < favoriteCount; j++) {
+                        favoriteAccounts[j] = accountTable[readVarInt()];
+                    }
+                    favoriteOf = Set.of(favoriteAccounts);
+                }
+                var floor = floorTable[readVarInt()];
+                var layer = readLayer();
+                var onlyVisibleTo = readVarInt();
+                result[i] = new POI(
+                        name,
+                        description,
+                        x,
+                        y,
+                        favoriteOf,
+                        floor,
+                        layer,
+                        onlyVisibleTo != 0 ? accountTable[onlyVisibleTo - 1] : null);
+            }
+            pois = Arrays.asList(result);
+        }
+
+        private String readString() {
+            return strings[readVarInt()];
+        }
+
+        // Layers are stored by name, and looked up once per string.
+        private Layer readLayer() {
+            var index = readVarInt();
+            var layer = layers[index];
+            if (layer == null) {
+                layer = Layer.valueOf(strings[index]);
+                layers[index] = layer;
+            }
+            return layer;
+        }
+
+        private int readVarInt() {
+            var value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                var b = body.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Variable-length integer is too long.");
+        }
+
+        private int readSignedVarInt() {
+            var value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
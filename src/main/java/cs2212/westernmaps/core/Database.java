@@ -1,49 +1,228 @@
 package cs2212.westernmaps.core;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.Nullable;
 
 /**
  * This class is for the database of the program. It creates the database that is used for the program
  * with a directory, json file, and its history.
  *
+ * <p>The whole database is saved as a snapshot, in one of the
+ * {@linkplain SnapshotFormat snapshot formats}. Changes to POIs are saved by
+ * appending them to a {@link DatabaseJournal} next to the snapshot, so saving
+ * after a small change doesn't rewrite the whole database. The snapshot is
+ * only rewritten when the journal gets too big, or when a change can't be
+ * journaled.</p>
+ *
+ * <p>Saving happens on a background thread, so the event thread doesn't wait
+ * for the disk. If the database is saved several times while a save is being
+ * written, the requests are combined into one write of the latest state.</p>
+ *
  * @author Connor Cummings
  */
 public final class Database {
+    /**
+     * The minimum size of the journal before it is compacted into the
+     * snapshot, in bytes. Once the journal is larger than this, it is
+     * compacted when it grows to half the size of the snapshot.
+     */
+    static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
+    // The size of the buffer that snapshots are written through.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final Path directory;
-    private final Path jsonFile;
     private final UndoHistory history;
+    private final DatabaseJournal journal;
+
+    // The format that the next snapshot will be written in.
+    private volatile SnapshotFormat snapshotFormat;
+    // The state that the snapshot and journal currently describe.
+    private DatabaseState savedState;
+    // The snapshot that the journal currently applies to, its format, and
+    // the state it contains.
+    private DatabaseJournal.Snapshot snapshot;
+    private SnapshotFormat savedSnapshotFormat;
+    private DatabaseState snapshotState;
+    // Whether new changes can be appended to the journal. If not, the journal
+    // has to be reset before changes are appended, or the snapshot rewritten
+    // if the saved state isn't the one in the snapshot.
+    private boolean journalValid;
+
+    // Writes saved states one at a time. Its thread stops when there is
+    // nothing to save, and isn't a daemon, so the application doesn't exit
+    // in the middle of a write.
+    private final ExecutorService saveExecutor = createSaveExecutor();
+    private final Object saveLock = new Object();
+    // The latest state that was requested to be saved, and the future that
+    // is completed once it is written, if it hasn't started being written yet.
+    private @Nullable DatabaseState pendingState = null;
+    private @Nullable CompletableFuture<Void> pendingSave = null;
 
     /**
      * The constructor for the database
      * @param directory, the directory being created
-     * @param jsonFile, the json file being used for the directory
      * @param history, the history of the new database being created
+     * @param journal, the journal of changes made since the snapshot was written
+     * @param snapshotFormat, the format the snapshot was loaded from
+     * @param snapshot, the snapshot the state was loaded from
+     * @param snapshotState, the state contained in the snapshot
+     * @param journalValid, whether new changes can be appended to the journal
      */
-    private Database(Path directory, Path jsonFile, UndoHistory history) {
+    private Database(
+            Path directory,
+            UndoHistory history,
+            DatabaseJournal journal,
+            SnapshotFormat snapshotFormat,
+            DatabaseJournal.Snapshot snapshot,
+            DatabaseState snapshotState,
+            boolean journalValid) {
         this.directory = directory;
-        this.jsonFile = jsonFile;
         this.history = history;
+        this.journal = journal;
+        this.snapshotFormat = snapshotFormat;
+        this.savedState = history.getCurrentState();
+        this.snapshot = snapshot;
+        this.savedSnapshotFormat = snapshotFormat;
+        this.snapshotState = snapshotState;
+        this.journalValid = journalValid;
     }
 
     /**
      * opens a new directory
+     *
+     * <p>If the directory has snapshots in more than one format, the one that
+     * the journal applies to is loaded, since the journal is reset whenever a
+     * snapshot is written. Otherwise, the newest one is loaded. Only the
+     * snapshot that is loaded is read, unless it is damaged, in which case the
+     * next one is tried instead.</p>
+     *
      * @param directory, the new directory that will be opened
-     * @return the new Database with the directory, jsonFile, and its history
-     * @throws IOException when the file is not found
+     * @return the new Database with the directory, snapshot, and its history
+     * @throws IOException when no snapshot is found, or none could be loaded
      */
     public static Database openDirectory(Path directory) throws IOException {
-        var jsonFile = directory.resolve("database.json");
+        var journal = new DatabaseJournal(directory.resolve("database.journal"));
+        var journalSnapshot = journal.readHeader();
+
+        // Pick the snapshot to load from the journal's header and the files'
+        // attributes. Its checksum is checked while it is loaded.
+        var candidates = new ArrayList<SnapshotFile>();
+        for (var fileName : List.of(SnapshotFormat.JSON.getFileName(), SnapshotFormat.BINARY.getFileName())) {
+            var file = directory.resolve(fileName);
+            if (Files.exists(file)) {
+                var size = Files.size(file);
+                var current = journalSnapshot != null && journalSnapshot.size() == size;
+                candidates.add(new SnapshotFile(file, Files.getLastModifiedTime(file), current));
+            }
+        }
+        if (candidates.isEmpty()) {
+            // Report the missing JSON file, which is the usual format.
+            throw new NoSuchFileException(directory.resolve(SnapshotFormat.JSON.getFileName()).toString());
+        }
+        candidates.sort(Comparator.comparing(SnapshotFile::current)
+                .reversed()
+                .thenComparing(SnapshotFile::modifiedTime, Comparator.reverseOrder()));
 
-        UndoHistory history;
-        try (var stream = Files.newInputStream(jsonFile)) {
-            var state = DatabaseState.loadFromStream(stream);
-            history = new UndoHistory(state);
+        IOException loadException = null;
+        LoadedSnapshot fallback = null;
+        for (var candidate : candidates) {
+            LoadedSnapshot loaded;
+            try {
+                loaded = loadSnapshot(candidate.file());
+            } catch (IOException ex) {
+                if (loadException == null) {
+                    loadException = ex;
+                }
+                continue;
+            }
+            // Two snapshots of the same size can only be told apart by their
+            // checksums, so keep looking if this wasn't the journal's one.
+            if (candidate.current() && !loaded.snapshot().equals(journalSnapshot)) {
+                if (fallback == null) {
+                    fallback = loaded;
+                }
+                continue;
+            }
+            return open(directory, journal, loaded);
+        }
+        if (fallback != null) {
+            return open(directory, journal, fallback);
         }
+        throw Objects.requireNonNull(loadException);
+    }
+
+    // Creates a database from a loaded snapshot and the changes in its
+    // journal.
+    private static Database open(Path directory, DatabaseJournal journal, LoadedSnapshot loaded) throws IOException {
+        var replay = journal.replay(loaded.snapshot(), loaded.state());
+        var database = new Database(
+                directory,
+                new UndoHistory(replay.state()),
+                journal,
+                loaded.format(),
+                loaded.snapshot(),
+                loaded.state(),
+                replay.valid());
+        if (replay.damaged()) {
+            // Don't append after a damaged line, which would never be
+            // replayed. Save everything that could be replayed instead.
+            database.compact(replay.state());
+        }
+        return database;
+    }
+
+    // Loads a snapshot file, working out its format from its content rather
+    // than its name. The file is streamed, and checksummed on the way.
+    private static LoadedSnapshot loadSnapshot(Path file) throws IOException {
+        var checksum = new CRC32();
+        try (var checkedStream = new CheckedInputStream(Files.newInputStream(file), checksum);
+                var stream = new BufferedInputStream(checkedStream, BUFFER_SIZE)) {
+            stream.mark(BinaryDatabaseFormat.HEADER_SIZE);
+            var header = stream.readNBytes(BinaryDatabaseFormat.HEADER_SIZE);
+            stream.reset();
+
+            SnapshotFormat format;
+            if (!BinaryDatabaseFormat.hasMagic(header)) {
+                format = SnapshotFormat.JSON;
+            } else if (BinaryDatabaseFormat.isCompressed(header)) {
+                format = SnapshotFormat.COMPRESSED_BINARY;
+            } else {
+                format = SnapshotFormat.BINARY;
+            }
+            var state = format.load(stream);
 
-        return new Database(directory, jsonFile, history);
+            // Checksum anything after the data, such as trailing whitespace.
+            stream.transferTo(OutputStream.nullOutputStream());
+            var snapshot = new DatabaseJournal.Snapshot(Files.size(file), checksum.getValue());
+            return new LoadedSnapshot(format, state, snapshot);
+        }
     }
 
     /**
@@ -62,18 +241,260 @@ public final class Database {
         return getHistory().getCurrentState();
     }
 
+    /**
+     * Gets the format that the whole database is written in when it is
+     * compacted.
+     *
+     * @return The snapshot format, which is the format the database was
+     *         loaded from unless it was changed.
+     */
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    /**
+     * Changes the format that the whole database is written in. The next time
+     * the database is saved, a new snapshot is written in this format.
+     * Snapshots that were already written are left as they are, and can still
+     * be loaded.
+     *
+     * @param snapshotFormat The new snapshot format.
+     */
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
     public URI resolveFloorMapUri(Floor floor) {
         var mapPath = directory.resolve(floor.mapPath());
         return mapPath.toUri();
     }
 
     /**
-     * This method saves the database
-     * @throws IOException when the database file is not found
+     * Saves the current state of the database in the background.
+     *
+     * <p>The changes since the last save are appended to the journal when
+     * possible, which takes time proportional to the size of the changes.
+     * Otherwise, or once the journal is big enough, the whole database is
+     * written as a new snapshot.</p>
+     *
+     * <p>If a save was requested but hasn't started being written yet, this
+     * request is combined with it, and both return the same future.</p>
+     *
+     * @return A future that is completed once the state is written, or
+     *         completed exceptionally with an {@link IOException} if it could
+     *         not be written. It may be completed on any thread.
+     */
+    public CompletableFuture<Void> saveAsync() {
+        var state = getCurrentState();
+        synchronized (saveLock) {
+            pendingState = state;
+            var future = pendingSave;
+            if (future == null) {
+                future = new CompletableFuture<>();
+                pendingSave = future;
+                saveExecutor.execute(this::writePendingState);
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Saves the current state of the database and waits until it is written,
+     * along with every save that was requested before it.
+     *
+     * <p>This should be called before the application exits, so that no
+     * changes are lost.</p>
+     *
+     * @throws IOException when the database file could not be written
      */
     public void save() throws IOException {
-        try (var stream = Files.newOutputStream(jsonFile)) {
-            getCurrentState().saveToStream(stream);
+        try {
+            saveAsync().join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw ex;
         }
     }
+
+    // Writes the latest requested state. This only runs on the save thread.
+    private void writePendingState() {
+        DatabaseState state;
+        CompletableFuture<Void> future;
+        synchronized (saveLock) {
+            state = Objects.requireNonNull(pendingState);
+            future = Objects.requireNonNull(pendingSave);
+            pendingState = null;
+            pendingSave = null;
+        }
+
+        try {
+            write(state);
+            future.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private void write(DatabaseState state) throws IOException {
+        if (state == savedState) {
+            return;
+        }
+
+        var changes = DatabaseJournal.encodeChanges(savedState, state);
+        if (changes == null || snapshotFormat != savedSnapshotFormat) {
+            compact(state);
+            return;
+        }
+        if (!journalValid) {
+            if (savedState != snapshotState) {
+                // Writing to the journal failed, so it can't be trusted to
+                // hold the changes since the snapshot.
+                compact(state);
+                return;
+            }
+            // The snapshot matches the saved state, so start a journal for it.
+            journal.reset(snapshot);
+            journalValid = true;
+        }
+
+        // If the changes are only partly written, nothing after them would be
+        // replayed, so nothing more can be appended until the snapshot is
+        // rewritten.
+        journalValid = false;
+        try {
+            journal.append(changes);
+        } catch (IOException ex) {
+            try {
+                compact(state);
+            } catch (IOException compactException) {
+                ex.addSuppressed(compactException);
+                throw ex;
+            }
+            return;
+        }
+        journalValid = true;
+        savedState = state;
+
+        if (journal.size() > Math.max(MIN_COMPACTION_SIZE, snapshot.size() / 2)) {
+            compact(state);
+        }
+    }
+
+    // Writes a whole state as a snapshot and empties the journal.
+    private void compact(DatabaseState state) throws IOException {
+        var format = snapshotFormat;
+
+        // The snapshot is streamed to the file and checksummed on the way, so
+        // that it never has to be held in memory as a whole.
+        var file = directory.resolve(format.getFileName());
+        var checksum = new CRC32();
+        // If this is interrupted after the snapshot is replaced, the journal
+        // no longer matches it and is ignored the next time it is opened.
+        journalValid = false;
+        writeAtomically(file, stream -> {
+            var output = new CheckedOutputStream(stream, checksum);
+            format.save(state, output);
+            output.flush();
+        });
+        snapshot = new DatabaseJournal.Snapshot(Files.size(file), checksum.getValue());
+        savedSnapshotFormat = format;
+        snapshotState = state;
+        savedState = state;
+        journal.reset(snapshot);
+        journalValid = true;
+    }
+
+    /**
+     * Replaces the content of a file, so that the file always has either its
+     * old or its new content, even if the application stops while writing.
+     *
+     * <p>The content is written to a temporary file in the same directory,
+     * which is flushed to the disk and then renamed over the file. The new
+     * file keeps the permissions of the file it replaces.</p>
+     *
+     * @param file  The file to write.
+     * @param bytes The new content of the file.
+     * @throws IOException when the file could not be written
+     */
+    static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        writeAtomically(file, stream -> stream.write(bytes));
+    }
+
+    /**
+     * Replaces the content of a file like {@link #writeAtomically(Path, byte[])},
+     * but lets the new content be streamed to the file.
+     *
+     * @param file    The file to write.
+     * @param content Writes the new content of the file to a buffered stream.
+     * @throws IOException when the file could not be written
+     */
+    static void writeAtomically(Path file, FileContent content) throws IOException {
+        var directory = Objects.requireNonNullElse(file.toAbsolutePath().getParent(), Path.of("."));
+        // Unlike Files.createTempFile, which makes files that only their owner
+        // can read, this creates the file with the default permissions.
+        // Saves happen one at a time, so the name never clashes.
+        var temporaryFile = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            try (var channel = FileChannel.open(
+                    temporaryFile,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                var stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                content.writeTo(stream);
+                stream.flush();
+                // Make sure the content is on the disk before the rename is,
+                // so that a crash can't leave an empty or partial file behind.
+                channel.force(true);
+            }
+            copyPermissions(file, temporaryFile);
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        forceDirectory(directory);
+    }
+
+    // Gives a new file the permissions of the file it will replace, if there
+    // is one and the file system has POSIX permissions.
+    private static void copyPermissions(Path file, Path newFile) throws IOException {
+        var view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view == null || !Files.exists(file)) {
+            return;
+        }
+        Files.setPosixFilePermissions(newFile, view.readAttributes().permissions());
+    }
+
+    // Flushes a rename in a directory to the disk. Directories can't be opened
+    // on every platform, in which case the rename is left to the OS.
+    private static void forceDirectory(Path directory) {
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // The file has still been replaced, so this isn't an error.
+        }
+    }
+
+    private static ExecutorService createSaveExecutor() {
+        return new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable);
+            thread.setName("Database Save Thread");
+            return thread;
+        });
+    }
+
+    /** The content of a file that is written by {@link #writeAtomically(Path, FileContent)}. */
+    @FunctionalInterface
+    interface FileContent {
+        void writeTo(OutputStream stream) throws IOException;
+    }
+
+    // A snapshot file that was found when opening a directory, and whether
+    // it's the size of the snapshot that the journal applies to.
+    private record SnapshotFile(Path file, FileTime modifiedTime, boolean current) {}
+
+    // A snapshot file that was loaded successfully.
+    private record LoadedSnapshot(SnapshotFormat format, DatabaseState state, DatabaseJournal.Snapshot snapshot) {}
 }
@@ -0,0 +1,470 @@
+package cs2212.westernmaps.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only log of the changes made to the POIs of a database since its
+ * snapshot was last written. A snapshot is the whole database, saved in one
+ * of the {@linkplain SnapshotFormat snapshot formats}.
+ *
+ * <p>Rewriting the whole database after every change takes time proportional
+ * to the size of the database. Instead, each change to a POI is appended to
+ * the journal as one line of compact JSON, which only takes time proportional
+ * to the size of the change. When the database is opened, the changes in the
+ * journal are replayed on top of the state loaded from the snapshot.</p>
+ *
+ * <p>The first line of the journal identifies the snapshot it applies to by
+ * its size and CRC-32 checksum. If the snapshot is rewritten but the journal
+ * isn't reset afterwards, the journal no longer matches and is ignored, since
+ * its changes are already in the snapshot. Every following line is one
+ * change, identified by its {@code op} field:</p>
+ *
+ * <ul>
+ *     <li>{@code add}: A POI was inserted at an index.</li>
+ *     <li>{@code delete}: The POI at an index was removed.</li>
+ *     <li>{@code move}: The POI at an index was moved to a new location.</li>
+ *     <li>{@code rename}: The name or description of the POI at an index was
+ *     changed.</li>
+ *     <li>{@code favorite}: The accounts that have marked the POI at an index
+ *     as a favorite were changed.</li>
+ *     <li>{@code replace}: Any other change was made to the POI at an
+ *     index.</li>
+ * </ul>
+ *
+ * <p>Accounts and floors are written as their indices in the database's list
+ * of accounts and in the floors of every building, in order. Changes to the
+ * accounts or buildings themselves can't be journaled, and require the
+ * snapshot to be rewritten.</p>
+ */
+final class DatabaseJournal {
+    private static final int VERSION = 1;
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .configure(DeserializationFeature.FAIL_ON_TRAILING_TOKENS, true)
+            .build();
+
+    private final Path file;
+
+    /**
+     * Creates a journal that is stored in a file. The file isn't created
+     * until the journal is {@linkplain #reset(Snapshot) reset}.
+     *
+     * @param file The path of the journal file.
+     */
+    DatabaseJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the size of the journal file.
+     *
+     * @return The size of the file in bytes, or 0 if it doesn't exist.
+     * @throws IOException If the size of the file could not be read.
+     */
+    long size() throws IOException {
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    /**
+     * Reads which snapshot the journal applies to, without replaying it.
+     *
+     * @return The snapshot named in the header of the journal, or
+     *         {@code null} if the journal doesn't exist or its header is
+     *         invalid.
+     * @throws IOException If the journal file could not be read.
+     */
+    @Nullable Snapshot readHeader() throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            var line = reader.readLine();
+            return line != null ? parseHeader(line) : null;
+        }
+    }
+
+    /**
+     * Replays the changes in the journal on top of the state loaded from a
+     * snapshot.
+     *
+     * <p>If the journal doesn't exist or belongs to a different snapshot,
+     * the state is returned unchanged. If the journal is damaged, for example
+     * because the application stopped while a change was being written, the
+     * changes before the damaged line are replayed.</p>
+     *
+     * @param snapshot The snapshot the state was loaded from.
+     * @param state    The state loaded from the snapshot.
+     * @return         The result of replaying the journal.
+     * @throws IOException If the journal file could not be read.
+     */
+    Replay replay(Snapshot snapshot, DatabaseState state) throws IOException {
+        if (!Files.exists(file)) {
+            return new Replay(state, false, false);
+        }
+
+        var content = Files.readString(file, StandardCharsets.UTF_8);
+        var lines = content.lines().toList();
+        if (lines.isEmpty() || !isHeaderOf(lines.get(0), snapshot)) {
+            return new Replay(state, false, false);
+        }
+
+        var pois = new ArrayList<>(state.pois());
+        var references = new References(state);
+        // A line that is cut off may still be valid JSON, so the last change
+        // only counts if the line was finished.
+        var damaged = !content.endsWith("\n");
+        var lastLine = damaged ? lines.size() - 1 : lines.size();
+        for (int i = 1; i < lastLine; i++) {
+            if (!applyChange(lines.get(i), pois, references)) {
+                damaged = true;
+                break;
+            }
+        }
+        return new Replay(new DatabaseState(state.accounts(), state.buildings(), pois), true, damaged);
+    }
+
+    /**
+     * Replaces the journal with an empty one that applies to a snapshot.
+     *
+     * <p>This should be called right after the snapshot is written. The new
+     * journal is {@linkplain Database#writeAtomically written atomically}, so
+     * the old journal is never left partly overwritten.</p>
+     *
+     * @param snapshot The snapshot the journal will apply to.
+     * @throws IOException If the journal could not be written.
+     */
+    void reset(Snapshot snapshot) throws IOException {
+        var header = MAPPER.createObjectNode();
+        header.put("version", VERSION);
+        header.put("snapshotSize", snapshot.size());
+        header.put("snapshotChecksum", snapshot.checksum());
+
+        Database.writeAtomically(file, (MAPPER.writeValueAsString(header) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends changes to the end of the journal.
+     *
+     * @param changes The changes, as returned by {@link #encodeChanges}.
+     * @throws IOException If the changes could not be written.
+     */
+    void append(List<String> changes) throws IOException {
+        var builder = new StringBuilder();
+        for (var change : changes) {
+            builder.append(change).append('\n');
+        }
+        Files.writeString(file, builder, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Works out the changes that turn one state into another.
+     *
+     * <p>POIs are compared by identity, which finds the changes made by
+     * {@link DatabaseState#modifyPOIs} in time proportional to the number of
+     * POIs, without comparing their contents. Undoing a change is found as a
+     * change back to the previous POI.</p>
+     *
+     * @param from The state that the journal currently describes.
+     * @param to   The new state.
+     * @return     The changes, encoded as lines of the journal, or
+     *             {@code null} if the changes can't be journaled and the
+     *             snapshot has to be rewritten instead.
+     */
+    static @Nullable List<String> encodeChanges(DatabaseState from, DatabaseState to) {
+        if (!isSameList(from.accounts(), to.accounts()) || !isSameList(from.buildings(), to.buildings())) {
+            return null;
+        }
+
+        var oldPois = from.pois();
+        var newPois = to.pois();
+        Set<POI> oldSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        oldSet.addAll(oldPois);
+        Set<POI> newSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        newSet.addAll(newPois);
+
+        // Walk both lists at once. The index of each change is its index in
+        // the new list, since every POI before it has already been changed.
+        var references = new References(to);
+        var changes = new ArrayList<String>();
+        var oldIndex = 0;
+        var newIndex = 0;
+        while (oldIndex < oldPois.size() || newIndex < newPois.size()) {
+            var oldPoi = oldIndex < oldPois.size() ? oldPois.get(oldIndex) : null;
+            var newPoi = newIndex < newPois.size() ? newPois.get(newIndex) : null;
+            ObjectNode change;
+            if (oldPoi != null && oldPoi == newPoi) {
+                oldIndex++;
+                newIndex++;
+                continue;
+            } else if (oldPoi != null && newPoi != null && !newSet.contains(oldPoi) && !oldSet.contains(newPoi)) {
+                change = encodeUpdate(newIndex, oldPoi, newPoi, references);
+                oldIndex++;
+                newIndex++;
+            } else if (oldPoi != null && !newSet.contains(oldPoi)) {
+                change = createChange("delete", newIndex);
+                oldIndex++;
+            } else if (newPoi != null && !oldSet.contains(newPoi)) {
+                var encodedPoi = encodePoi(newPoi, references);
+                if (encodedPoi == null) {
+                    return null;
+                }
+                change = createChange("add", newIndex);
+                change.set("poi", encodedPoi);
+                newIndex++;
+            } else {
+                // The POIs were reordered, which isn't worth journaling.
+                return null;
+            }
+
+            if (change == null) {
+                return null;
+            }
+            changes.add(change.toString());
+        }
+        return changes;
+    }
+
+    private static ObjectNode createChange(String op, int index) {
+        return MAPPER.createObjectNode().put("op", op).put("index", index);
+    }
+
+    // Checks whether two lists contain the same objects, in the same order.
+    private static boolean isSameList(List<?> first, List<?> second) {
+        if (first == second) {
+            return true;
+        }
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Encodes the change from one POI to another at the same index, using
+    // the smallest kind of change that describes it.
+    private static @Nullable ObjectNode encodeUpdate(int index, POI oldPoi, POI newPoi, References references) {
+        var sameLocation = oldPoi.x() == newPoi.x() && oldPoi.y() == newPoi.y();
+        var sameText = oldPoi.name().equals(newPoi.name()) && oldPoi.description().equals(newPoi.description());
+        var sameFavorites = oldPoi.favoriteOf().equals(newPoi.favoriteOf());
+        var sameRest = oldPoi.floor().equals(newPoi.floor())
+                && oldPoi.layer() == newPoi.layer()
+                && Objects.equals(oldPoi.onlyVisibleTo(), newPoi.onlyVisibleTo());
+
+        ObjectNode change;
+        if (sameRest && sameText && sameFavorites) {
+            change = createChange("move", index).put("x", newPoi.x()).put("y", newPoi.y());
+        } else if (sameRest && sameLocation && sameFavorites) {
+            change = createChange("rename", index)
+                    .put("name", newPoi.name())
+                    .put("description", newPoi.description());
+        } else if (sameRest && sameLocation && sameText) {
+            var favoriteOf = references.encodeAccounts(newPoi.favoriteOf());
+            if (favoriteOf == null) {
+                return null;
+            }
+            change = createChange("favorite", index);
+            change.set("favoriteOf", favoriteOf);
+        } else {
+            var encodedPoi = encodePoi(newPoi, references);
+            if (encodedPoi == null) {
+                return null;
+            }
+            change = createChange("replace", index);
+            change.set("poi", encodedPoi);
+        }
+        return change;
+    }
+
+    private static @Nullable ObjectNode encodePoi(POI poi, References references) {
+        var favoriteOf = references.encodeAccounts(poi.favoriteOf());
+        var floor = references.floorIndices.get(poi.floor());
+        if (favoriteOf == null || floor == null) {
+            return null;
+        }
+
+        var node = MAPPER.createObjectNode();
+        node.put("name", poi.name());
+        node.put("description", poi.description());
+        node.put("x", poi.x());
+        node.put("y", poi.y());
+        node.set("favoriteOf", favoriteOf);
+        node.put("floor", floor);
+        node.put("layer", poi.layer().name());
+        var onlyVisibleTo = poi.onlyVisibleTo();
+        if (onlyVisibleTo != null) {
+            var account = references.accountIndices.get(onlyVisibleTo);
+            if (account == null) {
+                return null;
+            }
+            node.put("onlyVisibleTo", account);
+        }
+        return node;
+    }
+
+    // Applies one line of the journal to a list of POIs. Returns false if the
+    // line isn't a valid change.
+    private static boolean applyChange(String line, List<POI> pois, References references) {
+        try {
+            var change = MAPPER.readTree(line);
+            var index = change.get("index").intValue();
+            var op = change.get("op").textValue();
+            if ("add".equals(op)) {
+                if (index < 0 || index > pois.size()) {
+                    return false;
+                }
+                pois.add(index, decodePoi(change.get("poi"), references));
+                return true;
+            }
+
+            if (index < 0 || index >= pois.size()) {
+                return false;
+            }
+            var poi = pois.get(index);
+            switch (Objects.requireNonNullElse(op, "")) {
+                case "delete" -> pois.remove(index);
+                case "move" -> pois.set(
+                        index, poi.withLocation(change.get("x").intValue(), change.get("y").intValue()));
+                case "rename" -> pois.set(
+                        index,
+                        poi.withName(change.get("name").textValue())
+                                .withDescription(change.get("description").textValue()));
+                case "favorite" -> pois.set(
+                        index,
+                        new POI(
+                                poi.name(),
+                                poi.description(),
+                                poi.x(),
+                                poi.y(),
+                                references.decodeAccounts(change.get("favoriteOf")),
+                                poi.floor(),
+                                poi.layer(),
+                                poi.onlyVisibleTo()));
+                case "replace" -> pois.set(index, decodePoi(change.get("poi"), references));
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (JsonProcessingException | RuntimeException ex) {
+            // Missing fields, nulls and bad indices all mean the line is
+            // damaged.
+            return false;
+        }
+    }
+
+    private static POI decodePoi(JsonNode node, References references) {
+        var onlyVisibleTo = node.get("onlyVisibleTo");
+        return new POI(
+                Objects.requireNonNull(node.get("name").textValue()),
+                Objects.requireNonNull(node.get("description").textValue()),
+                node.get("x").intValue(),
+                node.get("y").intValue(),
+                references.decodeAccounts(node.get("favoriteOf")),
+                references.floors.get(node.get("floor").intValue()),
+                Layer.valueOf(node.get("layer").textValue()),
+                onlyVisibleTo != null ? references.accounts.get(onlyVisibleTo.intValue()) : null);
+    }
+
+    private static boolean isHeaderOf(String line, Snapshot snapshot) {
+        return snapshot.equals(parseHeader(line));
+    }
+
+    private static @Nullable Snapshot parseHeader(String line) {
+        try {
+            var header = MAPPER.readTree(line);
+            if (header.path("version").asInt() != VERSION) {
+                return null;
+            }
+            return new Snapshot(header.path("snapshotSize").asLong(), header.path("snapshotChecksum").asLong());
+        } catch (JsonProcessingException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies a snapshot file that a journal applies to.
+     *
+     * @param size     The size of the file in bytes.
+     * @param checksum The CRC-32 checksum of the content of the file.
+     */
+    record Snapshot(long size, long checksum) {}
+
+    /**
+     * The result of replaying a journal.
+     *
+     * @param state   The state with the changes in the journal applied.
+     * @param valid   Whether the journal applies to the snapshot, so that
+     *                new changes can be appended to it.
+     * @param damaged Whether some of the journal couldn't be replayed, in
+     *                which case new changes must not be appended after it.
+     */
+    record Replay(DatabaseState state, boolean valid, boolean damaged) {}
+
+    // The indices of the accounts and floors of a state, which POIs refer to.
+    private static final class References {
+        private final List<Account> accounts;
+        private final List<Floor> floors = new ArrayList<>();
+        private final Map<Account, Integer> accountIndices = new HashMap<>();
+        private final Map<Floor, Integer> floorIndices = new HashMap<>();
+
+        private References(DatabaseState state) {
+            accounts = state.accounts();
+            for (int i = 0; i < accounts.size(); i++) {
+                accountIndices.putIfAbsent(accounts.get(i), i);
+            }
+            for (var building : state.buildings()) {
+                for (var floor : building.floors()) {
+                    floorIndices.putIfAbsent(floor, floors.size());
+                    floors.add(floor);
+                }
+            }
+        }
+
+        private @Nullable JsonNode encodeAccounts(Set<Account> accountSet) {
+            var indices = new ArrayList<Integer>();
+            for (var account : accountSet) {
+                var index = accountIndices.get(account);
+                if (index == null) {
+                    return null;
+                }
+                indices.add(index);
+            }
+            // Sets have no order, so sort the indices to keep the output stable.
+            Collections.sort(indices);
+            var node = MAPPER.createArrayNode();
+            indices.forEach(node::add);
+            return node;
+        }
+
+        private Set<Account> decodeAccounts(JsonNode node) {
+            var accountSet = new ArrayList<Account>();
+            for (var index : node) {
+                accountSet.add(accounts.get(index.intValue()));
+            }
+            return Set.copyOf(accountSet);
+        }
+    }
+}
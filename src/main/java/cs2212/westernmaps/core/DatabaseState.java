@@ -1,14 +1,9 @@
 package cs2212.westernmaps.core;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.Separators;
-import com.fasterxml.jackson.databind.MapperFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -71,34 +66,17 @@ public record DatabaseState(List<Account> accounts, List<Building> buildings, Li
      *                     the JSON data was invalid.
      */
     public static DatabaseState loadFromStream(InputStream stream) throws IOException {
-        return createObjectMapper().readValue(stream, DatabaseState.class);
+        return JsonDatabaseFormat.load(stream);
     }
 
     /**
      * Saves this database state as JSON data to an output stream.
      *
      * @param stream       The output stream to save data to.
-     * @throws IOException If an IO error occurred while writing the data, or
-     *                     the database could not be serialized as JSON.
+     * @throws IOException If an IO error occurred while writing the data.
      */
     public void saveToStream(OutputStream stream) throws IOException {
-        createObjectMapper().writeValue(stream, this);
-    }
-
-    /**
-     * Creates a Jackson {@link ObjectMapper} and configures it for serializing
-     * and deserializing a database to JSON.
-     *
-     * @return A new properly-configured {@code ObjectMapper}.
-     */
-    private static ObjectMapper createObjectMapper() {
-        return JsonMapper.builder()
-                .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false)
-                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
-                .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
-                .configure(SerializationFeature.INDENT_OUTPUT, true)
-                .defaultPrettyPrinter(new JsonPrettyPrinter())
-                .build();
+        JsonDatabaseFormat.save(this, stream);
     }
 
     // https://stackoverflow.com/a/64670800
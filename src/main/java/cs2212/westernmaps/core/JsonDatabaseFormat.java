@@ -0,0 +1,403 @@
+package cs2212.westernmaps.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Reads and writes database states as JSON, one token at a time.
+ *
+ * <p>The output is exactly what Jackson's data binding produces for a
+ * {@link DatabaseState} with properties sorted alphabetically and the
+ * {@link DatabaseState.JsonPrettyPrinter}, but nothing is built in memory
+ * except the objects of the state itself. Accounts and floors are written
+ * like {@link com.fasterxml.jackson.annotation.JsonIdentityInfo} with an
+ * {@code IntSequenceGenerator} writes them: in full with an {@code @id} the
+ * first time each object is written, and as that ID every time after.</p>
+ *
+ * <p>When reading, properties may be in any order, but an account or floor
+ * has to be written in full before its ID is used, which is always the case
+ * for files written by the application.</p>
+ */
+final class JsonDatabaseFormat {
+    // Factories are thread-safe, and reusing one lets parsers share their
+    // tables of field names.
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .configure(StreamReadFeature.AUTO_CLOSE_SOURCE, false)
+            .configure(StreamWriteFeature.AUTO_CLOSE_TARGET, false)
+            .build();
+
+    private static final String ID_PROPERTY = "@id";
+
+    // Prevents instances of this class from being created.
+    private JsonDatabaseFormat() {}
+
+    /**
+     * Loads a database state from an input stream containing JSON data.
+     *
+     * @param stream       The input stream to load data from.
+     * @return             A new database state containing the loaded data.
+     * @throws IOException If an IO error occurred while reading the data, or
+     *                     the JSON data was invalid.
+     */
+    static DatabaseState load(InputStream stream) throws IOException {
+        try (var parser = FACTORY.createParser(stream)) {
+            parser.nextToken();
+            return new Reader(parser).readState();
+        }
+    }
+
+    /**
+     * Saves a database state as JSON data to an output stream.
+     *
+     * @param state        The state to save.
+     * @param stream       The output stream to save data to.
+     * @throws IOException If an IO error occurred while writing the data.
+     */
+    static void save(DatabaseState state, OutputStream stream) throws IOException {
+        try (var generator = FACTORY.createGenerator(stream)) {
+            generator.setPrettyPrinter(new DatabaseState.JsonPrettyPrinter().createInstance());
+            new Writer(generator).writeState(state);
+        }
+    }
+
+    // Writes the tokens of a state, with properties in alphabetical order.
+    private static final class Writer {
+        private final JsonGenerator generator;
+        // The IDs of the accounts and floors written so far. Like Jackson,
+        // objects are told apart by identity rather than equality.
+        private final Map<Account, Integer> accountIds = new IdentityHashMap<>();
+        private final Map<Floor, Integer> floorIds = new IdentityHashMap<>();
+
+        private Writer(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        private void writeState(DatabaseState state) throws IOException {
+            generator.writeStartObject();
+
+            generator.writeFieldName("accounts");
+            generator.writeStartArray();
+            for (var account : state.accounts()) {
+                writeAccount(account);
+            }
+            generator.writeEndArray();
+
+            generator.writeFieldName("buildings");
+            generator.writeStartArray();
+            for (var building : state.buildings()) {
+                generator.writeStartObject();
+                generator.writeFieldName("floors");
+                generator.writeStartArray();
+                for (var floor : building.floors()) {
+                    writeFloor(floor);
+                }
+                generator.writeEndArray();
+                generator.writeStringField("name", building.name());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeFieldName("pois");
+            generator.writeStartArray();
+            for (var poi : state.pois()) {
+                writePoi(poi);
+            }
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+
+        private void writeAccount(Account account) throws IOException {
+            var id = accountIds.get(account);
+            if (id != null) {
+                generator.writeNumber(id);
+                return;
+            }
+            accountIds.put(account, accountIds.size() + 1);
+
+            generator.writeStartObject();
+            generator.writeNumberField(ID_PROPERTY, accountIds.size());
+            generator.writeBooleanField("developer", account.developer());
+            generator.writeStringField("passwordHash", account.passwordHash());
+            generator.writeStringField("username", account.username());
+            generator.writeEndObject();
+        }
+
+        private void writeFloor(Floor floor) throws IOException {
+            var id = floorIds.get(floor);
+            if (id != null) {
+                generator.writeNumber(id);
+                return;
+            }
+            floorIds.put(floor, floorIds.size() + 1);
+
+            generator.writeStartObject();
+            generator.writeNumberField(ID_PROPERTY, floorIds.size());
+            generator.writeStringField("longName", floor.longName());
+            generator.writeStringField("mapPath", floor.mapPath().toString());
+            generator.writeStringField("shortName", floor.shortName());
+            generator.writeEndObject();
+        }
+
+        private void writePoi(POI poi) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("description", poi.description());
+            generator.writeFieldName("favoriteOf");
+            generator.writeStartArray();
+            for (var account : poi.favoriteOf()) {
+                writeAccount(account);
+            }
+            generator.writeEndArray();
+            generator.writeFieldName("floor");
+            writeFloor(poi.floor());
+            generator.writeStringField("layer", poi.layer().name());
+            generator.writeStringField("name", poi.name());
+            var onlyVisibleTo = poi.onlyVisibleTo();
+            if (onlyVisibleTo != null) {
+                generator.writeFieldName("onlyVisibleTo");
+                writeAccount(onlyVisibleTo);
+            }
+            generator.writeNumberField("x", poi.x());
+            generator.writeNumberField("y", poi.y());
+            generator.writeEndObject();
+        }
+    }
+
+    // Reads the tokens of a state. Each method starts with the parser on the
+    // first token of its value, and leaves it on the last token.
+    private static final class Reader {
+        private final JsonParser parser;
+        private final Map<Integer, Account> accounts = new HashMap<>();
+        private final Map<Integer, Floor> floors = new HashMap<>();
+
+        private Reader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        private DatabaseState readState() throws IOException {
+            List<Account> stateAccounts = List.of();
+            List<Building> buildings = List.of();
+            List<POI> pois = List.of();
+
+            expect(JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "accounts" -> stateAccounts = readArray(this::readAccount);
+                    case "buildings" -> buildings = readArray(this::readBuilding);
+                    case "pois" -> pois = readArray(this::readPoi);
+                    default -> throw unknownField(field, DatabaseState.class);
+                }
+            }
+            return new DatabaseState(stateAccounts, buildings, pois);
+        }
+
+        private Account readAccount() throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                return resolve(accounts, Account.class);
+            }
+
+            Integer id = null;
+            String username = null;
+            String passwordHash = null;
+            var developer = false;
+            expect(JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case ID_PROPERTY -> id = readInt();
+                    case "developer" -> developer = readBoolean();
+                    case "passwordHash" -> passwordHash = readString();
+                    case "username" -> username = readString();
+                    default -> throw unknownField(field, Account.class);
+                }
+            }
+
+            var account = new Account(
+                    required(username, "username", Account.class),
+                    required(passwordHash, "passwordHash", Account.class),
+                    developer);
+            if (id != null) {
+                accounts.put(id, account);
+            }
+            return account;
+        }
+
+        private Floor readFloor() throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                return resolve(floors, Floor.class);
+            }
+
+            Integer id = null;
+            String shortName = null;
+            String longName = null;
+            String mapPath = null;
+            expect(JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case ID_PROPERTY -> id = readInt();
+                    case "longName" -> longName = readString();
+                    case "mapPath" -> mapPath = readString();
+                    case "shortName" -> shortName = readString();
+                    default -> throw unknownField(field, Floor.class);
+                }
+            }
+
+            var floor = new Floor(
+                    required(shortName, "shortName", Floor.class),
+                    required(longName, "longName", Floor.class),
+                    Path.of(required(mapPath, "mapPath", Floor.class)));
+            if (id != null) {
+                floors.put(id, floor);
+            }
+            return floor;
+        }
+
+        private Building readBuilding() throws IOException {
+            String name = null;
+            List<Floor> buildingFloors = null;
+            expect(JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "floors" -> buildingFloors = readArray(this::readFloor);
+                    case "name" -> name = readString();
+                    default -> throw unknownField(field, Building.class);
+                }
+            }
+            return new Building(
+                    required(name, "name", Building.class), required(buildingFloors, "floors", Building.class));
+        }
+
+        private POI readPoi() throws IOException {
+            String name = null;
+            String description = null;
+            var x = 0;
+            var y = 0;
+            List<Account> favoriteOf = null;
+            Floor floor = null;
+            Layer layer = null;
+            Account onlyVisibleTo = null;
+            expect(JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "description" -> description = readString();
+                    case "favoriteOf" -> favoriteOf = readArray(this::readAccount);
+                    case "floor" -> floor = readFloor();
+                    case "layer" -> layer = readLayer();
+                    case "name" -> name = readString();
+                    case "onlyVisibleTo" -> {
+                        if (parser.currentToken() != JsonToken.VALUE_NULL) {
+                            onlyVisibleTo = readAccount();
+                        }
+                    }
+                    case "x" -> x = readInt();
+                    case "y" -> y = readInt();
+                    default -> throw unknownField(field, POI.class);
+                }
+            }
+            return new POI(
+                    required(name, "name", POI.class),
+                    required(description, "description", POI.class),
+                    x,
+                    y,
+                    Set.copyOf(required(favoriteOf, "favoriteOf", POI.class)),
+                    required(floor, "floor", POI.class),
+                    required(layer, "layer", POI.class),
+                    onlyVisibleTo);
+        }
+
+        private Layer readLayer() throws IOException {
+            var name = readString();
+            try {
+                return Layer.valueOf(name);
+            } catch (IllegalArgumentException ex) {
+                throw new JsonParseException(parser, "Unknown layer \"" + name + "\".", ex);
+            }
+        }
+
+        private <T> List<T> readArray(ValueReader<T> reader) throws IOException {
+            expect(JsonToken.START_ARRAY);
+            var values = new ArrayList<T>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                values.add(reader.read());
+            }
+            return values;
+        }
+
+        private <T> T resolve(Map<Integer, T> objects, Class<T> type) throws IOException {
+            var id = parser.getIntValue();
+            var object = objects.get(id);
+            if (object == null) {
+                throw new JsonParseException(
+                        parser, "Unknown " + type.getSimpleName() + " ID " + id + ", or it is used before it is set.");
+            }
+            return object;
+        }
+
+        private String readString() throws IOException {
+            expect(JsonToken.VALUE_STRING);
+            return parser.getText();
+        }
+
+        private int readInt() throws IOException {
+            expect(JsonToken.VALUE_NUMBER_INT);
+            return parser.getIntValue();
+        }
+
+        private boolean readBoolean() throws IOException {
+            if (parser.currentToken() != JsonToken.VALUE_TRUE && parser.currentToken() != JsonToken.VALUE_FALSE) {
+                throw new JsonParseException(parser, "Expected a boolean, but found " + parser.currentToken() + ".");
+            }
+            return parser.getBooleanValue();
+        }
+
+        private void expect(JsonToken token) throws IOException {
+            if (parser.currentToken() != token) {
+                throw new JsonParseException(
+                        parser, "Expected " + token + ", but found " + parser.currentToken() + ".");
+            }
+        }
+
+        private <T> T required(@Nullable T value, String field, Class<?> type) throws IOException {
+            if (value == null) {
+                throw new JsonParseException(
+                        parser, "Missing property \"" + field + "\" of " + type.getSimpleName() + ".");
+            }
+            return value;
+        }
+
+        private JsonParseException unknownField(String field, Class<?> type) {
+            return new JsonParseException(
+                    parser, "Unknown property \"" + field + "\" of " + type.getSimpleName() + ".");
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        T read() throws IOException;
+    }
+}
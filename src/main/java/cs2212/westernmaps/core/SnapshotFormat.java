@@ -0,0 +1,71 @@
+package cs2212.westernmaps.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A format that a database can be saved to disk in.
+ *
+ * <p>A {@link Database} writes its whole state in one of these formats when
+ * it is compacted, and can open a database saved in any of them.</p>
+ */
+public enum SnapshotFormat {
+    /** Human-readable JSON, saved in {@code database.json}. */
+    JSON("database.json"),
+    /** The compact binary format, saved in {@code database.bin}. */
+    BINARY("database.bin"),
+    /**
+     * The compact binary format compressed with Deflate, saved in
+     * {@code database.bin}. This is smaller than {@link #BINARY}, but slower
+     * to load and save.
+     */
+    COMPRESSED_BINARY("database.bin");
+
+    private final String fileName;
+
+    SnapshotFormat(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Gets the name of the file in the database directory that this format is
+     * saved to.
+     *
+     * @return The name of the file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Loads a database state saved in this format. Both binary formats can
+     * load data saved in either of them.
+     *
+     * @param stream       The input stream to load data from.
+     * @return             A new database state containing the loaded data.
+     * @throws IOException If an IO error occurred while reading the data, or
+     *                     the data was invalid.
+     */
+    public DatabaseState load(InputStream stream) throws IOException {
+        return switch (this) {
+            case JSON -> DatabaseState.loadFromStream(stream);
+            case BINARY, COMPRESSED_BINARY -> BinaryDatabaseFormat.load(stream);
+        };
+    }
+
+    /**
+     * Saves a database state in this format.
+     *
+     * @param state        The state to save.
+     * @param stream       The output stream to save data to.
+     * @throws IOException If an IO error occurred while writing the data.
+     */
+    public void save(DatabaseState state, OutputStream stream) throws IOException {
+        switch (this) {
+            case JSON -> state.saveToStream(stream);
+            case BINARY -> BinaryDatabaseFormat.save(state, stream, false);
+            case COMPRESSED_BINARY -> BinaryDatabaseFormat.save(state, stream, true);
+        }
+    }
+}
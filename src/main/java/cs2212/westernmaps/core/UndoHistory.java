@@ -45,6 +45,21 @@ public final class UndoHistory {
         currentStateIndex++;
     }
 
+    /**
+     * Replaces the current state of this undo history, without adding a new
+     * state to it.
+     *
+     * <p>This is useful for merging several small changes into one state that
+     * can be undone at once. As with {@link #pushState}, any states in the
+     * future will be overwritten.</p>
+     *
+     * @param state The state to make current.
+     */
+    public void replaceCurrentState(DatabaseState state) {
+        history.subList(currentStateIndex + 1, history.size()).clear();
+        history.set(currentStateIndex, state);
+    }
+
     /**
      * Replaces this entire undo history with the provided state.
      *
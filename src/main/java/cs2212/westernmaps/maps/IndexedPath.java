@@ -0,0 +1,258 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A path that can quickly find the subpaths inside a rectangle.
+ *
+ * <p>The path is split into subpaths, each starting at a move command, and
+ * stored in packed arrays. A uniform grid is laid over the bounds of the path,
+ * and each cell of the grid lists the subpaths whose bounding boxes overlap
+ * it. This allows the part of a map that is on screen to be drawn without
+ * walking every segment of the map when it is zoomed in.</p>
+ *
+ * <p>Instances of this class are immutable.</p>
+ */
+final class IndexedPath {
+    // The width and height of each grid cell, in the path's coordinates.
+    private static final float CELL_SIZE = 32.0f;
+
+    private final Path2D.Float path;
+
+    // The type of each segment, and the coordinates of every segment packed
+    // together in order.
+    private final byte[] segmentTypes;
+    private final float[] segmentCoordinates;
+
+    // The index of the first segment and first coordinate of each subpath,
+    // followed by the number of segments and coordinates.
+    private final int[] subpathSegmentStarts;
+    private final int[] subpathCoordinateStarts;
+
+    // The bounding box of each subpath, as (minX, minY, maxX, maxY).
+    private final float[] subpathBounds;
+
+    // The grid of cells. The subpaths overlapping cell i are stored in
+    // cellSubpaths, from index cellStarts[i] to cellStarts[i + 1].
+    private final float gridX;
+    private final float gridY;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts;
+    private final int[] cellSubpaths;
+
+    /**
+     * Builds an index of a path.
+     *
+     * @param path The path to index. It must not be modified afterward.
+     */
+    IndexedPath(Path2D.Float path) {
+        this.path = path;
+
+        // Copy the segments into packed arrays, recording where each subpath
+        // starts.
+        var types = new byte[64];
+        var coordinates = new float[256];
+        var segmentStarts = new int[16];
+        var coordinateStarts = new int[16];
+        var segmentCount = 0;
+        var coordinateCount = 0;
+        var subpathCount = 0;
+
+        var segment = new float[6];
+        for (var iterator = path.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            var type = iterator.currentSegment(segment);
+            if (type == PathIterator.SEG_MOVETO) {
+                if (subpathCount == segmentStarts.length) {
+                    segmentStarts = Arrays.copyOf(segmentStarts, subpathCount * 2);
+                    coordinateStarts = Arrays.copyOf(coordinateStarts, subpathCount * 2);
+                }
+                segmentStarts[subpathCount] = segmentCount;
+                coordinateStarts[subpathCount] = coordinateCount;
+                subpathCount++;
+            }
+
+            if (segmentCount == types.length) {
+                types = Arrays.copyOf(types, segmentCount * 2);
+            }
+            types[segmentCount++] = (byte) type;
+
+            var length = getCoordinateCount(type);
+            if (coordinateCount + length > coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, Math.max(coordinates.length * 2, coordinateCount + length));
+            }
+            System.arraycopy(segment, 0, coordinates, coordinateCount, length);
+            coordinateCount += length;
+        }
+
+        segmentTypes = Arrays.copyOf(types, segmentCount);
+        segmentCoordinates = Arrays.copyOf(coordinates, coordinateCount);
+        subpathSegmentStarts = Arrays.copyOf(segmentStarts, subpathCount + 1);
+        subpathSegmentStarts[subpathCount] = segmentCount;
+        subpathCoordinateStarts = Arrays.copyOf(coordinateStarts, subpathCount + 1);
+        subpathCoordinateStarts[subpathCount] = coordinateCount;
+
+        // The bounds of curves include their control points, which is
+        // slightly too large but never too small.
+        subpathBounds = new float[subpathCount * 4];
+        for (int i = 0; i < subpathCount; i++) {
+            var minX = Float.POSITIVE_INFINITY;
+            var minY = Float.POSITIVE_INFINITY;
+            var maxX = Float.NEGATIVE_INFINITY;
+            var maxY = Float.NEGATIVE_INFINITY;
+            for (int j = subpathCoordinateStarts[i]; j < subpathCoordinateStarts[i + 1]; j += 2) {
+                minX = Math.min(minX, segmentCoordinates[j]);
+                minY = Math.min(minY, segmentCoordinates[j + 1]);
+                maxX = Math.max(maxX, segmentCoordinates[j]);
+                maxY = Math.max(maxY, segmentCoordinates[j + 1]);
+            }
+            subpathBounds[i * 4] = minX;
+            subpathBounds[i * 4 + 1] = minY;
+            subpathBounds[i * 4 + 2] = maxX;
+            subpathBounds[i * 4 + 3] = maxY;
+        }
+
+        var bounds = path.getBounds2D();
+        gridX = (float) bounds.getX();
+        gridY = (float) bounds.getY();
+        columns = Math.max(1, (int) Math.ceil(bounds.getWidth() / CELL_SIZE));
+        rows = Math.max(1, (int) Math.ceil(bounds.getHeight() / CELL_SIZE));
+
+        // Count the subpaths in each cell, then fill in the cells.
+        cellStarts = new int[columns * rows + 1];
+        for (int i = 0; i < subpathCount; i++) {
+            forEachCell(i, cell -> cellStarts[cell + 1]++);
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        cellSubpaths = new int[cellStarts[columns * rows]];
+        var cellFill = Arrays.copyOf(cellStarts, columns * rows);
+        for (int i = 0; i < subpathCount; i++) {
+            var subpath = i;
+            forEachCell(i, cell -> cellSubpaths[cellFill[cell]++] = subpath);
+        }
+    }
+
+    /**
+     * Gets the whole path.
+     *
+     * @return The path that was indexed.
+     */
+    Path2D.Float getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the number of subpaths in the path.
+     *
+     * @return The number of subpaths.
+     */
+    int getSubpathCount() {
+        return subpathBounds.length / 4;
+    }
+
+    /**
+     * Gets the subpaths whose bounding boxes intersect an area.
+     *
+     * @param area The area to search, in the path's coordinates.
+     * @return     A path containing the subpaths in the area, in their
+     *             original order. If the area contains the whole path, the
+     *             original path is returned.
+     */
+    Path2D.Float getSubpaths(Rectangle2D area) {
+        if (area.contains(path.getBounds2D())) {
+            return path;
+        }
+
+        var firstColumn = Math.max(0, (int) Math.floor((area.getMinX() - gridX) / CELL_SIZE));
+        var lastColumn = Math.min(columns - 1, (int) Math.floor((area.getMaxX() - gridX) / CELL_SIZE));
+        var firstRow = Math.max(0, (int) Math.floor((area.getMinY() - gridY) / CELL_SIZE));
+        var lastRow = Math.min(rows - 1, (int) Math.floor((area.getMaxY() - gridY) / CELL_SIZE));
+
+        // Subpaths can be in multiple cells, so collect them into a set first.
+        // This also sorts them, so they are drawn in their original order.
+        var found = new BitSet(getSubpathCount());
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                var cell = row * columns + column;
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    var subpath = cellSubpaths[i];
+                    if (subpathBounds[subpath * 4] <= area.getMaxX()
+                            && subpathBounds[subpath * 4 + 1] <= area.getMaxY()
+                            && subpathBounds[subpath * 4 + 2] >= area.getMinX()
+                            && subpathBounds[subpath * 4 + 3] >= area.getMinY()) {
+                        found.set(subpath);
+                    }
+                }
+            }
+        }
+
+        var result = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        for (int subpath = found.nextSetBit(0); subpath >= 0; subpath = found.nextSetBit(subpath + 1)) {
+            appendSubpath(result, subpath);
+        }
+        return result;
+    }
+
+    private void appendSubpath(Path2D.Float result, int subpath) {
+        var c = subpathCoordinateStarts[subpath];
+        var coordinates = segmentCoordinates;
+        for (int i = subpathSegmentStarts[subpath]; i < subpathSegmentStarts[subpath + 1]; i++) {
+            switch (segmentTypes[i]) {
+                case PathIterator.SEG_MOVETO -> result.moveTo(coordinates[c], coordinates[c + 1]);
+                case PathIterator.SEG_LINETO -> result.lineTo(coordinates[c], coordinates[c + 1]);
+                case PathIterator.SEG_QUADTO -> result.quadTo(
+                        coordinates[c], coordinates[c + 1], coordinates[c + 2], coordinates[c + 3]);
+                case PathIterator.SEG_CUBICTO -> result.curveTo(
+                        coordinates[c],
+                        coordinates[c + 1],
+                        coordinates[c + 2],
+                        coordinates[c + 3],
+                        coordinates[c + 4],
+                        coordinates[c + 5]);
+                default -> result.closePath();
+            }
+            c += getCoordinateCount(segmentTypes[i]);
+        }
+    }
+
+    // Calls the action with every grid cell that a subpath's bounds overlap.
+    private void forEachCell(int subpath, CellAction action) {
+        var firstColumn = getColumn(subpathBounds[subpath * 4]);
+        var firstRow = getRow(subpathBounds[subpath * 4 + 1]);
+        var lastColumn = getColumn(subpathBounds[subpath * 4 + 2]);
+        var lastRow = getRow(subpathBounds[subpath * 4 + 3]);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.run(row * columns + column);
+            }
+        }
+    }
+
+    private int getColumn(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - gridX) / CELL_SIZE)));
+    }
+
+    private int getRow(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - gridY) / CELL_SIZE)));
+    }
+
+    private static int getCoordinateCount(int segmentType) {
+        return switch (segmentType) {
+            case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 2;
+            case PathIterator.SEG_QUADTO -> 4;
+            case PathIterator.SEG_CUBICTO -> 6;
+            default -> 0;
+        };
+    }
+
+    @FunctionalInterface
+    private interface CellAction {
+        void run(int cell);
+    }
+}
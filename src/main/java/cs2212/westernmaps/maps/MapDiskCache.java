@@ -0,0 +1,362 @@
+package cs2212.westernmaps.maps;
+
+import static cs2212.westernmaps.maps.MapTileCache.TILE_SIZE;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent cache of rendered map images, stored in a directory on disk.
+ *
+ * <p>This allows maps to be shown after the application restarts without
+ * rendering their SVGs again. Each cache file holds one pyramid level of one
+ * map, split into tiles of {@link MapTileCache#TILE_SIZE} pixels that are
+ * compressed individually. Files are read back through memory-mapped
+ * {@link FileChannel}s.</p>
+ *
+ * <p>Cache files are named after a hash of the content of the map SVG, along
+ * with the scale and device scale they were rendered at. If a map SVG is
+ * changed, its hash changes too, so stale images are never used. Stale files
+ * of a map are deleted the next time a new image of the map is saved.</p>
+ *
+ * <p>Only maps that are stored in files can be cached. Any errors while
+ * reading the cache are treated as a cache miss.</p>
+ *
+ * <p>Instances of this class can be used concurrently by multiple threads.</p>
+ */
+public final class MapDiskCache {
+    // Identifies a cache file, and the version of the format it uses.
+    private static final int MAGIC = 0x574D5443; // "WMTC"
+    private static final int VERSION = 1;
+
+    // The size of the fixed part of the header, and of each tile's entry in
+    // the tile index that follows it.
+    private static final int HEADER_SIZE = 52;
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private static final String FILE_EXTENSION = ".tiles";
+
+    private final Path directory;
+
+    // Hashes of map SVGs that have already been computed, along with the
+    // size and modification time of the file when the hash was computed.
+    private final Map<Path, Fingerprint> fingerprints = new HashMap<>();
+
+    /**
+     * Creates a disk cache that stores its files in the given directory.
+     *
+     * <p>The directory will be created when the first file is saved.</p>
+     *
+     * @param directory The directory to store cache files in.
+     */
+    public MapDiskCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the size of a map from any image of it in the cache.
+     *
+     * @param mapUri The URI of the map SVG.
+     * @return       The size of the map, or {@code null} if no image of the
+     *               current version of the map is cached.
+     */
+    @Nullable MapSize readMapSize(URI mapUri) {
+        var prefix = getFilePrefix(mapUri);
+        if (prefix == null || !Files.isDirectory(directory)) {
+            return null;
+        }
+        try (var files = Files.newDirectoryStream(directory, prefix + "*" + FILE_EXTENSION)) {
+            for (var file : files) {
+                try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    var header = ByteBuffer.allocate(HEADER_SIZE);
+                    channel.read(header, 0);
+                    header.flip();
+                    if (header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION) {
+                        return new MapSize(header.getFloat(), header.getFloat());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a pyramid level of a map from the cache.
+     *
+     * @param mapUri      The URI of the map SVG.
+     * @param scale       The scale the image was rendered at.
+     * @param deviceScale The device scale the image was rendered at.
+     * @return            The cached image, or {@code null} if it isn't cached.
+     */
+    @Nullable BufferedImage readImage(URI mapUri, double scale, double deviceScale) {
+        var file = getFile(mapUri, scale, deviceScale);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var image = decodeImage(buffer, scale, deviceScale);
+            if (image == null) {
+                // The file is corrupt or was written by a different version.
+                Files.deleteIfExists(file);
+            }
+            return image;
+        } catch (IOException | RuntimeException | DataFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves a pyramid level of a map to the cache.
+     *
+     * <p>Any other files in the cache for older versions of the map are
+     * deleted.</p>
+     *
+     * @param mapUri      The URI of the map SVG.
+     * @param mapSize     The size of the map at its default zoom level.
+     * @param scale       The scale the image was rendered at.
+     * @param deviceScale The device scale the image was rendered at.
+     * @param image       The rendered image, which must be a
+     *                    {@link BufferedImage#TYPE_BYTE_GRAY} image.
+     */
+    void writeImage(URI mapUri, MapSize mapSize, double scale, double deviceScale, BufferedImage image) {
+        var file = getFile(mapUri, scale, deviceScale);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            deleteStaleFiles(mapUri);
+
+            // Write to a temporary file first, so other threads or instances
+            // of the application never see a partially written file.
+            var temporaryFile = Files.createTempFile(directory, "tiles", ".tmp");
+            try (var channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                for (var buffer : encodeImage(mapSize, scale, deviceScale, image)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Encodes an image as a header, a tile index, and the compressed tiles.
+    private static ByteBuffer[] encodeImage(MapSize mapSize, double scale, double deviceScale, BufferedImage image) {
+        var width = image.getWidth();
+        var height = image.getHeight();
+        var columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        var rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        var pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+        var index = ByteBuffer.allocate(columns * rows * INDEX_ENTRY_SIZE);
+        var data = new ByteArrayOutputStream();
+        var dataOffset = (long) HEADER_SIZE + index.capacity();
+
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        var tilePixels = new byte[TILE_SIZE * TILE_SIZE];
+        var compressed = new byte[TILE_SIZE * TILE_SIZE];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                var tileWidth = Math.min(TILE_SIZE, width - column * TILE_SIZE);
+                var tileHeight = Math.min(TILE_SIZE, height - row * TILE_SIZE);
+                for (int y = 0; y < tileHeight; y++) {
+                    var source = (row * TILE_SIZE + y) * width + column * TILE_SIZE;
+                    System.arraycopy(pixels, source, tilePixels, y * tileWidth, tileWidth);
+                }
+
+                deflater.reset();
+                deflater.setInput(tilePixels, 0, tileWidth * tileHeight);
+                deflater.finish();
+                var start = data.size();
+                while (!deflater.finished()) {
+                    var length = deflater.deflate(compressed);
+                    data.write(compressed, 0, length);
+                }
+                index.putLong(dataOffset + start);
+                index.putInt(data.size() - start);
+            }
+        }
+        deflater.end();
+        index.flip();
+
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putFloat(mapSize.width());
+        header.putFloat(mapSize.height());
+        header.putDouble(scale);
+        header.putDouble(deviceScale);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(TILE_SIZE);
+        header.putInt(columns);
+        header.putInt(rows);
+        header.flip();
+
+        return new ByteBuffer[] {header, index, ByteBuffer.wrap(data.toByteArray())};
+    }
+
+    // Decodes an image written by encodeImage, or returns null if the data
+    // isn't a valid cache file for the given scale.
+    private static @Nullable BufferedImage decodeImage(MappedByteBuffer buffer, double scale, double deviceScale)
+            throws DataFormatException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        buffer.getFloat(); // Map width
+        buffer.getFloat(); // Map height
+        if (buffer.getDouble() != scale || buffer.getDouble() != deviceScale) {
+            return null;
+        }
+        var width = buffer.getInt();
+        var height = buffer.getInt();
+        var tileSize = buffer.getInt();
+        var columns = buffer.getInt();
+        var rows = buffer.getInt();
+        if (tileSize != TILE_SIZE
+                || columns != (width + TILE_SIZE - 1) / TILE_SIZE
+                || rows != (height + TILE_SIZE - 1) / TILE_SIZE) {
+            return null;
+        }
+
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        var pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+        var inflater = new Inflater();
+        var tilePixels = new byte[TILE_SIZE * TILE_SIZE];
+        try {
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    var offset = buffer.getLong();
+                    var length = buffer.getInt();
+                    var tileWidth = Math.min(TILE_SIZE, width - column * TILE_SIZE);
+                    var tileHeight = Math.min(TILE_SIZE, height - row * TILE_SIZE);
+
+                    inflater.reset();
+                    inflater.setInput(buffer.slice((int) offset, length));
+                    var inflated = inflater.inflate(tilePixels, 0, tileWidth * tileHeight);
+                    if (inflated != tileWidth * tileHeight) {
+                        return null;
+                    }
+
+                    for (int y = 0; y < tileHeight; y++) {
+                        var destination = (row * TILE_SIZE + y) * width + column * TILE_SIZE;
+                        System.arraycopy(tilePixels, y * tileWidth, pixels, destination, tileWidth);
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return image;
+    }
+
+    // Deletes the cache files of a map that don't match its current content.
+    private void deleteStaleFiles(URI mapUri) throws IOException {
+        var mapFile = getMapFile(mapUri);
+        var prefix = getFilePrefix(mapUri);
+        if (mapFile == null || prefix == null) {
+            return;
+        }
+        // Matches files of this map with any hash, but not files of another
+        // map whose name starts with the name of this map.
+        var pattern = Pattern.compile(Pattern.quote(getBaseName(mapFile)) + "-[0-9a-f]{32}-.*");
+        try (var files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (var file : files) {
+                var name = file.getFileName().toString();
+                if (pattern.matcher(name).matches() && !name.startsWith(prefix)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Gets the cache file for an image, or null if the map isn't a file.
+    private @Nullable Path getFile(URI mapUri, double scale, double deviceScale) {
+        var prefix = getFilePrefix(mapUri);
+        if (prefix == null) {
+            return null;
+        }
+        return directory.resolve(prefix + "S" + scale + "-D" + deviceScale + FILE_EXTENSION);
+    }
+
+    // Gets the start of the names of the cache files of the current version
+    // of a map, or null if the map isn't a file.
+    private @Nullable String getFilePrefix(URI mapUri) {
+        var mapFile = getMapFile(mapUri);
+        if (mapFile == null) {
+            return null;
+        }
+        var hash = getContentHash(mapFile);
+        if (hash == null) {
+            return null;
+        }
+        return getBaseName(mapFile) + "-" + hash + "-";
+    }
+
+    // Gets a hash of the content of a map file. The hash is only recomputed
+    // if the file was modified since it was last computed.
+    private synchronized @Nullable String getContentHash(Path mapFile) {
+        try {
+            var size = Files.size(mapFile);
+            var modified = Files.getLastModifiedTime(mapFile);
+            var fingerprint = fingerprints.get(mapFile);
+            if (fingerprint != null && fingerprint.size() == size && fingerprint.modified().equals(modified)) {
+                return fingerprint.hash();
+            }
+
+            var digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(mapFile));
+            // Half of a SHA-256 hash is plenty to tell versions of a map apart.
+            var hash = HexFormat.of().formatHex(digest, 0, 16);
+            fingerprints.put(mapFile, new Fingerprint(size, modified, hash));
+            return hash;
+        } catch (IOException ex) {
+            return null;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Missing algorithm: SHA-256", ex);
+        }
+    }
+
+    private static @Nullable Path getMapFile(URI mapUri) {
+        if (!"file".equals(mapUri.getScheme())) {
+            return null;
+        }
+        return Path.of(mapUri);
+    }
+
+    // Gets the name of a map file without its extension.
+    private static String getBaseName(Path mapFile) {
+        var name = mapFile.getFileName().toString();
+        var extensionIndex = name.lastIndexOf('.');
+        return extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+    }
+
+    private record Fingerprint(long size, FileTime modified, String hash) {}
+}
@@ -0,0 +1,256 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * The geometry of a floor map, parsed once from its SVG.
+ *
+ * <p>Every map SVG consists of a single stroked path with the ID
+ * {@code map}, which may be clipped by a clip path. Instead of having SVG
+ * Salamander interpret the path data every time the map is rendered, the path
+ * is parsed into a {@link Path2D.Float} when the map is loaded and drawn with
+ * {@link Graphics2D#draw(Shape)}.</p>
+ *
+ * <p>The path is stored in an {@link IndexedPath}, so only the subpaths that
+ * intersect the clip of the {@link Graphics2D} are drawn. When zoomed in, this
+ * keeps the cost of rendering proportional to the part of the map that is
+ * visible, rather than to the size of the whole floor plan.</p>
+ *
+ * <p>When zoomed out, small details like text and door arcs shrink to less
+ * than a pixel. For these zoom levels, simplified copies of the path are
+ * prepared with the {@link PathSimplifier} when the map is loaded, one for
+ * each power-of-two zoom level below 1.0. Each copy is accurate to within
+ * half a pixel at the zoom levels it is used for.</p>
+ *
+ * <p>Instances of this class are immutable, so the same geometry can be
+ * rendered by multiple threads at once, each with its own line thickness.</p>
+ */
+final class MapGeometry {
+    private static final String MAP_PATH_ID = "map";
+    private static final Color MAP_COLOR = Color.BLACK;
+    // The miter limit used by every map SVG.
+    private static final float MITER_LIMIT = 10.0f;
+
+    // The pyramid levels that have simplified copies of the path, from 2^-1
+    // down to 2^-SIMPLIFIED_LEVEL_COUNT.
+    private static final int SIMPLIFIED_LEVEL_COUNT = 4;
+    // The maximum error of the simplified paths, in pixels.
+    private static final double SIMPLIFY_TOLERANCE_PIXELS = 0.5;
+    // The size of the smallest subpaths kept in simplified paths, in pixels.
+    private static final double SIMPLIFY_MIN_SIZE_PIXELS = 1.0;
+
+    private static final Pattern CLIP_PATH_URL_PATTERN = Pattern.compile("url\\(#(.+)\\)");
+
+    private final MapSize size;
+    private final IndexedPath path;
+    private final @Nullable Path2D.Float clip;
+
+    // The simplified copies of the path, where simplifiedPaths[i] is used for
+    // pixel scales of at most 2^-(i + 1).
+    private final IndexedPath[] simplifiedPaths;
+
+    private MapGeometry(MapSize size, IndexedPath path, @Nullable Path2D.Float clip) {
+        this.size = size;
+        this.path = path;
+        this.clip = clip;
+
+        simplifiedPaths = new IndexedPath[SIMPLIFIED_LEVEL_COUNT];
+        for (int i = 0; i < SIMPLIFIED_LEVEL_COUNT; i++) {
+            var levelScale = Math.scalb(1.0, -(i + 1));
+            simplifiedPaths[i] = new IndexedPath(PathSimplifier.simplify(
+                    path.getPath(), SIMPLIFY_TOLERANCE_PIXELS / levelScale, SIMPLIFY_MIN_SIZE_PIXELS / levelScale));
+        }
+    }
+
+    /**
+     * Loads the geometry of a map SVG.
+     *
+     * @param mapUri The URI of the map SVG.
+     * @return       The parsed geometry of the map.
+     * @throws IOException If the map can't be read, or isn't a map SVG.
+     */
+    static MapGeometry load(URI mapUri) throws IOException {
+        try (var stream = mapUri.toURL().openStream()) {
+            return load(stream);
+        }
+    }
+
+    /**
+     * Loads the geometry of a map SVG from a stream.
+     *
+     * @param stream The stream to read the map SVG from.
+     * @return       The parsed geometry of the map.
+     * @throws IOException If the map can't be read, or isn't a map SVG.
+     */
+    static MapGeometry load(InputStream stream) throws IOException {
+        var document = parseXml(stream);
+        var root = document.getDocumentElement();
+
+        var width = parseLength(root.getAttribute("width"));
+        var height = parseLength(root.getAttribute("height"));
+        // The map path is drawn in the coordinates of the view box, so it has
+        // to match the size of the map.
+        var viewBox = root.getAttribute("viewBox").trim();
+        if (!viewBox.isEmpty() && !parseViewBox(viewBox).equals(List.of(0.0f, 0.0f, width, height))) {
+            throw new IOException("Unsupported view box: " + viewBox);
+        }
+
+        var mapElement = findPath(document, MAP_PATH_ID);
+        if (mapElement == null) {
+            throw new IOException("Map SVG has no path with ID '" + MAP_PATH_ID + "'");
+        }
+        var path = new IndexedPath(SvgPathParser.parse(mapElement.getAttribute("d")));
+
+        Path2D.Float clip = null;
+        Matcher clipMatcher = CLIP_PATH_URL_PATTERN.matcher(mapElement.getAttribute("clip-path"));
+        if (clipMatcher.matches()) {
+            clip = parseClipPath(document, clipMatcher.group(1));
+        }
+
+        return new MapGeometry(new MapSize(width, height), path, clip);
+    }
+
+    /**
+     * Gets the size of the map at its default zoom level.
+     *
+     * @return The size of the map.
+     */
+    MapSize getSize() {
+        return size;
+    }
+
+    /**
+     * Renders the map to a {@link Graphics2D}.
+     *
+     * <p>Lines are drawn at most one pixel thick, and get thinner when zoomed
+     * out so that the map doesn't turn into a black blob. Whether lines are
+     * antialiased depends on the rendering hints of {@code gfx}.</p>
+     *
+     * @param gfx   The {@link Graphics2D} to render the map to. Its state is
+     *              not changed.
+     * @param x     The position of the map on the x-axis.
+     * @param y     The position of the map on the y-axis.
+     * @param scale The zoom level to render the map at.
+     */
+    void render(Graphics2D gfx, double x, double y, double scale) {
+        var gfx2 = (Graphics2D) gfx.create();
+        // This matches how SVG Salamander draws paths.
+        gfx2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        gfx2.translate(x, y);
+        gfx2.scale(scale, scale);
+
+        var lineThickness = (float) Math.min(1.0 / scale, 1.0);
+        gfx2.setStroke(
+                new BasicStroke(lineThickness, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, MITER_LIMIT));
+        gfx2.setPaint(MAP_COLOR);
+
+        // Only draw the subpaths that can touch the visible area, including
+        // lines just outside of it that are thick enough to reach inside.
+        // Use the simplest path that is still accurate at the size of a pixel,
+        // which includes the scale of the display.
+        var detailedPath = getPathForPixelScale(gfx2.getTransform().getScaleX());
+        var visiblePath = detailedPath.getPath();
+        var visibleArea = gfx2.getClip();
+        if (visibleArea != null) {
+            var bounds = visibleArea.getBounds2D();
+            bounds.setRect(
+                    bounds.getX() - lineThickness,
+                    bounds.getY() - lineThickness,
+                    bounds.getWidth() + 2 * lineThickness,
+                    bounds.getHeight() + 2 * lineThickness);
+            visiblePath = detailedPath.getSubpaths(bounds);
+        }
+
+        if (clip != null) {
+            gfx2.clip(clip);
+        }
+        gfx2.draw(visiblePath);
+        gfx2.dispose();
+    }
+
+    private IndexedPath getPathForPixelScale(double pixelScale) {
+        var level = (int) Math.ceil(Math.log(pixelScale) / Math.log(2.0));
+        if (level >= 0) {
+            return path;
+        }
+        return simplifiedPaths[Math.min(-level, SIMPLIFIED_LEVEL_COUNT) - 1];
+    }
+
+    private static Document parseXml(InputStream stream) throws IOException {
+        try {
+            var factory = DocumentBuilderFactory.newInstance();
+            // Map SVGs never need external entities, so don't resolve them.
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            return factory.newDocumentBuilder().parse(stream);
+        } catch (ParserConfigurationException ex) {
+            throw new RuntimeException(ex);
+        } catch (SAXException ex) {
+            throw new IOException("Map SVG is not valid XML", ex);
+        }
+    }
+
+    // Parses the path inside the <clipPath> element with the given ID.
+    private static Path2D.Float parseClipPath(Document document, String id) throws IOException {
+        var clipPaths = document.getElementsByTagName("clipPath");
+        for (int i = 0; i < clipPaths.getLength(); i++) {
+            var clipPath = (Element) clipPaths.item(i);
+            if (!clipPath.getAttribute("id").equals(id)) {
+                continue;
+            }
+            var paths = clipPath.getElementsByTagName("path");
+            if (paths.getLength() != 1) {
+                throw new IOException("Clip path '" + id + "' must contain exactly one path");
+            }
+            return SvgPathParser.parse(((Element) paths.item(0)).getAttribute("d"));
+        }
+        throw new IOException("Missing clip path '" + id + "'");
+    }
+
+    private static @Nullable Element findPath(Document document, String id) {
+        var paths = document.getElementsByTagName("path");
+        for (int i = 0; i < paths.getLength(); i++) {
+            var path = (Element) paths.item(i);
+            if (path.getAttribute("id").equals(id)) {
+                return path;
+            }
+        }
+        return null;
+    }
+
+    // Parses the width or height of an SVG, which may be in pixels.
+    private static float parseLength(String length) throws IOException {
+        try {
+            return Float.parseFloat(length.endsWith("px") ? length.substring(0, length.length() - 2) : length);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Unsupported map size: " + length, ex);
+        }
+    }
+
+    private static List<Float> parseViewBox(String viewBox) throws IOException {
+        var values = new ArrayList<Float>();
+        for (var value : viewBox.split("[\\s,]+")) {
+            values.add(parseLength(value));
+        }
+        return values;
+    }
+}
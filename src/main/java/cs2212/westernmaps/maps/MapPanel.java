@@ -9,7 +9,6 @@ import cs2212.westernmaps.core.*;
 import cs2212.westernmaps.pois.POISummaryPanel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
@@ -74,6 +73,10 @@ public final class MapPanel extends JPanel {
     // A timer that is used to cause database failed/saved text to disappear after the most recent change.
     private final Timer timer;
 
+    // The state pushed by the summary panel's current edit session, which
+    // the following changes of the session replace.
+    private @Nullable DatabaseState editSessionState = null;
+
     private final Account loggedInAccount;
 
     private final EnumSet<Layer> visibleLayers = EnumSet.allOf(Layer.class);
@@ -129,32 +132,39 @@ public final class MapPanel extends JPanel {
         poiSummaryPanel.setVisible(false);
 
         poiSummaryPanel.addPoiChangeListener((oldPoi, newPoi) -> {
-            var state = database.getCurrentState().modifyPOIs(pois -> pois.stream()
+            var history = database.getHistory();
+            var state = history.getCurrentState().modifyPOIs(pois -> pois.stream()
                     .map(poi -> poi.equals(oldPoi) ? newPoi : poi)
                     .toList());
-            database.getHistory().pushState(state);
-            try {
-                database.save();
-                showLabelTemporarily(databaseSaved);
-            } catch (IOException ex) {
-                showLabelTemporarily(saveFailed);
-                ex.printStackTrace();
+            // Merge keystrokes into the state of the current edit session,
+            // unless something else has changed the database since.
+            if (editSessionState != null && history.getCurrentState() == editSessionState) {
+                history.replaceCurrentState(state);
+            } else {
+                history.pushState(state);
+            }
+
+            // Edit sessions are saved once they are committed.
+            if (poiSummaryPanel.isEditing()) {
+                editSessionState = state;
+            } else {
+                editSessionState = null;
+                saveChanges();
             }
             refreshPois();
         });
 
+        poiSummaryPanel.addEditCommitListener(() -> {
+            editSessionState = null;
+            saveChanges();
+        });
+
         poiSummaryPanel.addPoiDeleteListener(oldPoi -> {
             var state = database.getCurrentState()
                     .modifyPOIs(pois ->
                             pois.stream().filter(poi -> !poi.equals(oldPoi)).toList());
             database.getHistory().pushState(state);
-            try {
-                database.save();
-                showLabelTemporarily(databaseSaved);
-            } catch (IOException ex) {
-                showLabelTemporarily(saveFailed);
-                ex.printStackTrace();
-            }
+            saveChanges();
             poiSummaryPanel.setVisible(false);
             refreshPois();
         });
@@ -173,13 +183,7 @@ public final class MapPanel extends JPanel {
             database.getHistory().pushState(newState);
 
             // Save changes to disk.
-            try {
-                database.save();
-                showLabelTemporarily(databaseSaved);
-            } catch (IOException ex) {
-                showLabelTemporarily(saveFailed);
-                ex.printStackTrace();
-            }
+            saveChanges();
 
             // If the summary panel is open, make sure it's up to date.
             if (poiSummaryPanel.isVisible()) {
@@ -189,6 +193,7 @@ public final class MapPanel extends JPanel {
         });
         mapViewer.setPoiMoveCondition(poi -> loggedInAccount.developer() || poi.layer() == Layer.CUSTOM);
         mapViewer.setPoiVisibleCondition(poi -> isLayerVisible(poi.layer()) && isPoiVisible(poi));
+        prefetchOtherFloors();
         refreshPois();
 
         var floatingControls = createFloatingControls();
@@ -227,7 +232,11 @@ public final class MapPanel extends JPanel {
 
         // back button
         var backButton = new JButton("Back");
-        backButton.addActionListener(e -> backListeners.forEach(Runnable::run));
+        backButton.addActionListener(e -> {
+            // The other floors of this building won't be needed anymore.
+            mapViewer.cancelPrefetch();
+            backListeners.forEach(Runnable::run);
+        });
 
         // search bar
         var searchBar = new JTextField(30);
@@ -258,13 +267,7 @@ public final class MapPanel extends JPanel {
 
             var state = database.getCurrentState().modifyPOIs(pois -> Lists.append(pois, poi));
             database.getHistory().pushState(state);
-            try {
-                database.save();
-                showLabelTemporarily(databaseSaved);
-            } catch (IOException ex) {
-                showLabelTemporarily(saveFailed);
-                ex.printStackTrace();
-            }
+            saveChanges();
             refreshPois();
         });
 
@@ -294,7 +297,7 @@ public final class MapPanel extends JPanel {
             cardPanel.setBounds(bounds);
             glassPane.setVisible(true);
 
-            var results = getSearchResults(searchBar.getText().split(" "), database, building);
+            var results = getSearchResults(searchBar.getText().split(" "), database.getCurrentState().pois(), building);
             if (results.isEmpty()) {
                 // making a "blank" POI as search results can only contain a list of POIS
                 searchResults.setListData(new POI[] {});
@@ -429,10 +432,8 @@ public final class MapPanel extends JPanel {
         return floatingControls;
     }
 
-    // getting the search results
-    private List<POI> getSearchResults(String[] query, Database database, Building building) {
-        List<POI> pois = database.getCurrentState().pois();
-
+    // getting the search results, which is package-private for benchmarks
+    static List<POI> getSearchResults(String[] query, List<POI> pois, Building building) {
         // Going through the list of words
         for (int i = 0; i < query.length; i++) {
             int finalI = i;
@@ -448,7 +449,7 @@ public final class MapPanel extends JPanel {
     }
 
     // Getting if the POI in the search matches
-    private boolean poiMatches(String word, POI poi, Building building) {
+    private static boolean poiMatches(String word, POI poi, Building building) {
         String wordLowerCase = word.toLowerCase();
         return poi.name().toLowerCase().contains(wordLowerCase)
                 || poi.description().toLowerCase().contains(wordLowerCase)
@@ -525,6 +526,7 @@ public final class MapPanel extends JPanel {
         // Switch to the floor containing the selected POI if POI is on a different floor
         if (!poi.floor().equals(currentFloor)) {
             changeToFloor(poi.floor());
+            prefetchOtherFloors();
         }
 
         // Scroll map to put the POI in the center.
@@ -538,6 +540,14 @@ public final class MapPanel extends JPanel {
         poiSummaryPanel.setVisible(true);
     }
 
+    // Prepares the maps of the floors around the current floor in the background
+    private void prefetchOtherFloors() {
+        var mapUris =
+                building.floors().stream().map(database::resolveFloorMapUri).toList();
+        var currentIndex = building.floors().indexOf(currentFloor);
+        mapViewer.prefetchMaps(MapPrefetcher.orderByDistance(mapUris, currentIndex));
+    }
+
     private void refreshPois() {
         var pois = database.getCurrentState().pois().stream()
                 .filter(poi -> poi.floor().equals(currentFloor) && isPoiVisible(poi))
@@ -574,6 +584,7 @@ public final class MapPanel extends JPanel {
         } else {
             visibleLayers.remove(layer);
         }
+        mapViewer.refreshPoiVisibility();
         repaint();
     }
 
@@ -596,6 +607,18 @@ public final class MapPanel extends JPanel {
         buildingChangeListeners.add(listener);
     }
 
+    // Saves the database in the background, then shows whether it worked.
+    private void saveChanges() {
+        database.saveAsync().whenComplete((result, ex) -> SwingUtilities.invokeLater(() -> {
+            if (ex == null) {
+                showLabelTemporarily(databaseSaved);
+            } else {
+                showLabelTemporarily(saveFailed);
+                ex.printStackTrace();
+            }
+        }));
+    }
+
     // Showing the database saved label
     private void showLabelTemporarily(JLabel label) {
         databaseSaved.setVisible(false);
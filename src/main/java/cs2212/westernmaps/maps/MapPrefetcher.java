@@ -0,0 +1,84 @@
+package cs2212.westernmaps.maps;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads and renders maps in the background before they are shown.
+ *
+ * <p>This is used to prepare the other floors of a building while the user is
+ * looking at one of them, so that switching floors doesn't have to load and
+ * render the new floor's SVG first. The default zoom level of each map is
+ * read from the disk cache, or rendered if it isn't there, into the shared
+ * {@link MapTileCache}.</p>
+ *
+ * <p>Prefetching runs on the shared {@link RenderScheduler} with the lowest
+ * priority, so it doesn't compete with rendering the map that is currently
+ * visible.</p>
+ */
+final class MapPrefetcher {
+    private final RenderScheduler scheduler = RenderScheduler.getShared();
+
+    // Incremented whenever prefetching is cancelled, so a task that is
+    // already running can tell that its maps are no longer needed.
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Starts prefetching the given maps, in order.
+     *
+     * <p>Any maps that were being prefetched by this object beforehand are
+     * cancelled.</p>
+     *
+     * @param mapUris     The URIs of the maps to prefetch, with the most
+     *                    important maps first.
+     * @param deviceScale The scale of the display the maps will be shown on.
+     */
+    void start(List<URI> mapUris, double deviceScale) {
+        cancel();
+        var startGeneration = generation.get();
+        var uris = List.copyOf(mapUris);
+        scheduler.submit(this, RenderScheduler.Priority.PREFETCH, () -> {
+            for (var mapUri : uris) {
+                if (generation.get() != startGeneration) {
+                    return;
+                }
+                MapRenderCache.prerenderDefaultLevel(mapUri, deviceScale);
+            }
+        });
+    }
+
+    /**
+     * Cancels every map that hasn't started prefetching yet.
+     *
+     * <p>A map that is already being rendered is allowed to finish.</p>
+     */
+    void cancel() {
+        generation.incrementAndGet();
+        scheduler.cancel(this);
+    }
+
+    /**
+     * Orders a list of floor maps so that the floors closest to the current
+     * floor come first, alternating between the floor above and below.
+     *
+     * <p>The current floor itself is not included in the result.</p>
+     *
+     * @param mapUris      The maps of every floor, in order from bottom to top.
+     * @param currentIndex The index of the floor that is currently shown.
+     * @return             The other maps, nearest first.
+     */
+    static List<URI> orderByDistance(List<URI> mapUris, int currentIndex) {
+        var ordered = new ArrayList<URI>();
+        for (int distance = 1; distance < mapUris.size(); distance++) {
+            if (currentIndex + distance < mapUris.size()) {
+                ordered.add(mapUris.get(currentIndex + distance));
+            }
+            if (currentIndex - distance >= 0) {
+                ordered.add(mapUris.get(currentIndex - distance));
+            }
+        }
+        return ordered;
+    }
+}
@@ -1,85 +1,225 @@
 package cs2212.westernmaps.maps;
 
-import com.kitfox.svg.SVGDiagram;
-import com.kitfox.svg.SVGException;
+import static cs2212.westernmaps.maps.MapTileCache.TILE_SIZE;
+
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nullable;
 import javax.swing.JComponent;
 
 /**
  * Handles optimized rendering of map SVGs.
  *
- * <p>This class avoids rendering the SVG data directly more than a few times,
- * since it's relatively expensive. The map is rendered to a bitmap image on a
- * background thread pool, which is then used to render the map when available.
- * While the image is being created, the SVG is rendered directly.</p>
+ * <p>This class avoids rendering the map geometry directly more than a few
+ * times, since it's relatively expensive. The map is split into tiles, and
+ * each visible tile is rendered to a bitmap image in parallel by the
+ * {@link ParallelMapRenderer}. The tiles are then used to render the map when
+ * available.</p>
+ *
+ * <p>Maps are parsed into {@link MapGeometry} once and kept in memory, so
+ * rendering never has to interpret the SVG again.</p>
+ *
+ * <p>Rendered tiles are kept in the shared {@link MapTileCache}, which evicts
+ * the least recently used tiles once its memory budget is exceeded. Since only
+ * visible tiles are rendered, this works at every zoom level, and since the
+ * cache is shared, switching back to a recently viewed floor is instant.</p>
+ *
+ * <p>Each map also has a pyramid of whole-map images rendered at power-of-two
+ * zoom levels. While the tiles for a new zoom level are being rendered, the
+ * nearest pyramid level is scaled to fit instead, so zooming in and out stays
+ * smooth without rendering the SVG directly.</p>
  *
- * <p>This optimization is disabled when the user is zoomed in really far to
- * reduce memory usage, since the map image gets really large at high zoom
- * levels.</p>
+ * <p>When a map is shown for the first time, no pyramid level is available
+ * yet. In that case, a small preview is rendered first without antialiasing,
+ * which only takes a moment, and is replaced by the antialiased images once
+ * they are ready. The map is never rendered on the event dispatch thread.</p>
+ *
+ * <p>If a {@link MapDiskCache} is {@linkplain #setDiskCache(MapDiskCache)
+ * set}, pyramid levels are also saved to disk, and are read back from there
+ * before rendering the SVG. The SVG is only loaded once something actually
+ * needs to be rendered, so a map whose images are all on disk can be shown
+ * without parsing its SVG at all. Like rendering, reading the disk cache and
+ * working out the size of a map never happen on the event dispatch
+ * thread.</p>
+ *
+ * <p>Images are drawn to the screen through a {@link ScreenImageCache}, so
+ * repainting the map while panning doesn't convert the grayscale images to
+ * the screen's format every time.</p>
+ *
+ * <p>All rendering runs on the shared {@link RenderScheduler}, which only
+ * keeps the latest request of each kind, so zooming quickly doesn't queue up
+ * renders for zoom levels that are no longer shown.</p>
  *
  * @author Connor Cummings
  */
 public final class MapRenderCache {
-    private static final double MAX_CACHED_SCALE = 5.0;
-    private static final double MIN_CACHED_SCALE = 0.0;
-    private static final long RENDER_DELAY_MS = 200;
+    /**
+     * The smallest pyramid level, as a power of two. Level -3 has a scale of
+     * 0.125.
+     */
+    static final int MIN_PYRAMID_LEVEL = -3;
+
+    /**
+     * The largest pyramid level, as a power of two. Level 1 has a scale of
+     * 2.0.
+     */
+    static final int MAX_PYRAMID_LEVEL = 1;
+
+    // The pyramid level for the default zoom level of a map, which is 1.0.
+    private static final int DEFAULT_PYRAMID_LEVEL = 0;
+    // The scale of previews. This is large enough that a stretched preview
+    // is still recognizable at the default zoom level.
+    private static final double PREVIEW_SCALE = 0.25;
+
+    // The parsed geometry of every map that has been rendered.
+    private static final ConcurrentHashMap<URI, MapGeometry> GEOMETRY_CACHE = new ConcurrentHashMap<>();
+    // The size of every map that has been shown, so that render() can look
+    // it up without loading anything.
+    private static final ConcurrentHashMap<URI, MapSize> MAP_SIZES = new ConcurrentHashMap<>();
+    // The pyramid levels that were looked for in the disk cache and weren't
+    // there, so render() doesn't wait for the disk cache again.
+    private static final Set<MapTileCache.LevelKey> DISK_MISSES = ConcurrentHashMap.newKeySet();
+
+    private static volatile @Nullable MapDiskCache diskCache;
+
+    private final MapTileCache tileCache = MapTileCache.getShared();
+    private final RenderScheduler scheduler = RenderScheduler.getShared();
+    private final ScreenImageCache screenImages = new ScreenImageCache();
 
-    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
-        var thread = new Thread(runnable);
-        // Make sure the thread will stop when all other threads exit.
-        thread.setDaemon(true);
-        thread.setName("Map Render Cache Thread");
-        return thread;
-    });
+    // Called from the render thread whenever a new tile becomes available.
+    private final Runnable repaintCallback;
 
-    // The diagram of the map being rendered, along with the scale of zoom
-    private SVGDiagram diagram;
+    // The URI of the map being rendered, along with the scale of zoom
+    private URI mapUri;
 
     private double scale;
     private double deviceScale = 1.0;
 
-    // A future containing the cached image. Can be in one of these states:
-    //   - null: Rendering has not been started.
-    //   - Not null, not completed: Rendering an image is in progress.
-    //   - Not null, completed: An image is available with the get method.
-    private @Nullable Future<BufferedImage> cachedImageFuture;
+    // The tiles that are waiting to be rendered, in the order they were
+    // requested, along with the time they were first requested. Guarded by
+    // this object's monitor.
+    private final LinkedHashMap<MapTileCache.TileKey, Long> requestedTiles = new LinkedHashMap<>();
+
+    // The number of tiles that render() found cached or had to request, for
+    // the RenderStats.
+    private long tileHits = 0;
+    private long tileMisses = 0;
 
     /**
      * Creates a new {@code MapRenderCache}.
      *
-     * @param diagram The map SVG to render first (can be changed later).
-     * @param scale   The initial zoom level of the map (can be changed later).
+     * @param mapUri          The URI of the map SVG to render first (can be
+     *                        changed later).
+     * @param scale           The initial zoom level of the map (can be changed
+     *                        later).
+     * @param repaintCallback A function that is called from a background
+     *                        thread whenever a newly rendered tile can be shown.
      */
-    public MapRenderCache(SVGDiagram diagram, double scale) {
-        this.diagram = diagram;
+    public MapRenderCache(URI mapUri, double scale, Runnable repaintCallback) {
+        this.mapUri = mapUri;
         this.scale = scale;
+        this.repaintCallback = repaintCallback;
+    }
+
+    /**
+     * Loads the geometry of a map.
+     *
+     * <p>Geometry is cached, so loading the same map again is cheap. This
+     * method can be called from any thread.</p>
+     *
+     * @param mapUri The URI of the map SVG to load.
+     * @return       The loaded geometry.
+     */
+    static MapGeometry loadGeometry(URI mapUri) {
+        return GEOMETRY_CACHE.computeIfAbsent(mapUri, uri -> {
+            try {
+                return MapGeometry.load(uri);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+    }
+
+    /**
+     * Sets the disk cache that pyramid levels of every map are saved to.
+     *
+     * @param diskCache The disk cache to use, or {@code null} to only keep
+     *                  rendered images in memory.
+     */
+    public static void setDiskCache(@Nullable MapDiskCache diskCache) {
+        MapRenderCache.diskCache = diskCache;
+    }
+
+    /**
+     * Renders a map at the default zoom level into the shared
+     * {@link MapTileCache}, so it can be shown without waiting.
+     *
+     * <p>This blocks until the map is rendered, and does nothing if the map
+     * is already cached in memory. If the map is cached on disk, it is read
+     * from there instead of being rendered.</p>
+     *
+     * @param mapUri      The URI of the map SVG to render.
+     * @param deviceScale The scale of the display the map will be shown on.
+     */
+    static void prerenderDefaultLevel(URI mapUri, double deviceScale) {
+        getOrRenderLevel(new MapTileCache.LevelKey(mapUri, DEFAULT_PYRAMID_LEVEL, deviceScale));
     }
 
     /**
-     * Gets the SVG diagram currently being rendered.
+     * Gets the URI of the map SVG currently being rendered.
      *
-     * @return The diagram that is currently being used.
+     * @return The URI of the map that is currently being used.
      */
-    public SVGDiagram getDiagram() {
-        return diagram;
+    public URI getMapUri() {
+        return mapUri;
     }
 
     /**
      * Changes the map SVG that is currently being rendered.
      *
-     * @param diagram The new map SVG to render in place of the previous one.
+     * @param mapUri The URI of the new map SVG to render in place of the
+     *               previous one.
+     */
+    public void setMapUri(URI mapUri) {
+        this.mapUri = mapUri;
+        cancelPendingWork();
+    }
+
+    /**
+     * Cancels every render that was requested for this cache and hasn't
+     * started yet.
+     *
+     * <p>This should be called once the map is no longer shown. Renders that
+     * have already started are allowed to finish, and their results are kept
+     * in the shared {@link MapTileCache}. Rendering the map again requests
+     * whatever is missing.</p>
      */
-    public void setDiagram(SVGDiagram diagram) {
-        this.diagram = diagram;
+    public void cancelPendingWork() {
         invalidateCache();
+        scheduler.cancel(this);
+    }
+
+    /**
+     * Releases the copies of map images that were made for drawing them to
+     * the screen quickly.
+     *
+     * <p>This should be called once the map is no longer shown, since the
+     * copies may use video memory. They are made again the next time the map
+     * is rendered.</p>
+     */
+    public void releaseScreenImages() {
+        screenImages.clear();
     }
 
     /**
@@ -97,92 +237,402 @@ public final class MapRenderCache {
     /**
      * Renders the current map to the provided {@link Graphics2D}.
      *
-     * <p>If a cached image is available, it will be used. Otherwise, a thread
-     * will be started for rendering an image and the SVG will be rendered
-     * directly instead.</p>
+     * <p>Only the tiles that intersect the clip of {@code gfx} are rendered.
+     * Tiles that are cached will be used directly. Otherwise, the missing
+     * tiles are scheduled to be rendered and the nearest pyramid level
+     * will be scaled to fill their place. If no pyramid level has been
+     * rendered yet, a preview is scaled to fill their place instead, or they
+     * are left empty until the preview is ready.</p>
+     *
+     * <p>Only images in memory are drawn. Images in the disk cache, and the
+     * size of a map that hasn't been shown before, are loaded in the
+     * background, and the map is repainted once they are ready.</p>
      *
      * @param gfx       The {@link Graphics2D} to render the map to.
      * @param x         The position of the map on the x-axis.
      * @param y         The position of the map on the y-axis.
      * @param component The component the map will be rendered to, or
-     *                  {@code null} if there is none. This is used by the
-     *                  SVG Salamander library.
+     *                  {@code null} if there is none.
      */
     public void render(Graphics2D gfx, int x, int y, @Nullable JComponent component) {
         deviceScale = gfx.getDeviceConfiguration().getDefaultTransform().getScaleX();
-        var cachedImage = getCachedImageIfReady();
-        var gfx2 = (Graphics2D) gfx.create();
-        if (cachedImage != null) {
+
+        var mapSize = MAP_SIZES.get(mapUri);
+        if (mapSize == null) {
+            // Nothing can be drawn without knowing which tiles are visible.
+            requestDiskRead(null);
+            return;
+        }
+
+        // If the current scale is exactly a pyramid level, the whole map may
+        // have already been rendered at this scale.
+        var exactLevel = getPyramidLevel(scale);
+        var isExactLevel = getPyramidScale(exactLevel) == scale;
+        var exactLevelKey = createLevelKey(exactLevel);
+        var exactLevelImage = isExactLevel ? tileCache.get(exactLevelKey) : null;
+        if (isExactLevel && exactLevelImage == null && diskCache != null && !DISK_MISSES.contains(exactLevelKey)) {
+            // Reading the level from disk is much faster than rendering its
+            // tiles, so wait for it instead of requesting them.
+            requestDiskRead(exactLevelKey);
+            drawInterimImage(gfx, x, y, gfx.getClipBounds(), component, false);
+            return;
+        }
+        if (exactLevelImage != null) {
+            var gfx2 = (Graphics2D) gfx.create();
             gfx2.translate(x, y);
             gfx2.scale(1.0 / deviceScale, 1.0 / deviceScale);
-            gfx2.drawImage(cachedImage, 0, 0, component);
-        } else {
-            renderSvgToGraphicsDestructive(diagram, gfx2, x, y, scale, component);
+            screenImages.draw(gfx2, exactLevelImage, 0, 0, component);
+            gfx2.dispose();
+            tileHits++;
+            return;
         }
-    }
 
-    // Returns the cached image if it is ready, or null if it is not ready.
-    private @Nullable BufferedImage getCachedImageIfReady() {
-        if (cachedImageFuture == null) {
-            if (scale <= MAX_CACHED_SCALE && scale >= MIN_CACHED_SCALE) {
-                cachedImageFuture = executor.submit(() -> {
-                    Thread.sleep(RENDER_DELAY_MS);
-                    return renderSvgToImage(diagram, scale, deviceScale);
-                });
+        // Work out which tiles are visible, in device pixels relative to the
+        // top-left corner of the map.
+        var mapWidth = (int) Math.ceil(mapSize.width() * scale * deviceScale);
+        var mapHeight = (int) Math.ceil(mapSize.height() * scale * deviceScale);
+        var visible = new Rectangle(0, 0, mapWidth, mapHeight);
+        var clip = gfx.getClipBounds();
+        if (clip != null) {
+            var clipX = (int) Math.floor((clip.x - x) * deviceScale);
+            var clipY = (int) Math.floor((clip.y - y) * deviceScale);
+            var clipWidth = (int) Math.ceil(clip.width * deviceScale) + 1;
+            var clipHeight = (int) Math.ceil(clip.height * deviceScale) + 1;
+            visible = visible.intersection(new Rectangle(clipX, clipY, clipWidth, clipHeight));
+        }
+        if (visible.isEmpty()) {
+            return;
+        }
+
+        var firstColumn = visible.x / TILE_SIZE;
+        var lastColumn = (visible.x + visible.width - 1) / TILE_SIZE;
+        var firstRow = visible.y / TILE_SIZE;
+        var lastRow = (visible.y + visible.height - 1) / TILE_SIZE;
+
+        var tileGfx = (Graphics2D) gfx.create();
+        tileGfx.translate(x, y);
+        tileGfx.scale(1.0 / deviceScale, 1.0 / deviceScale);
+
+        // The area covered by tiles that aren't rendered yet, in device pixels.
+        Rectangle missingArea = null;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                var key = createTileKey(column, row);
+                var tile = tileCache.get(key);
+                if (tile != null) {
+                    screenImages.draw(tileGfx, tile, column * TILE_SIZE, row * TILE_SIZE, component);
+                    tileHits++;
+                    continue;
+                }
+
+                tileMisses++;
+                requestTile(key);
+                var tileBounds = new Rectangle(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                missingArea = missingArea == null ? tileBounds : missingArea.union(tileBounds);
             }
-            return null;
         }
-        try {
-            return cachedImageFuture.isDone() ? cachedImageFuture.get() : null;
-        } catch (InterruptedException | ExecutionException ex) {
-            throw new RuntimeException(ex);
+        tileGfx.dispose();
+
+        if (missingArea != null) {
+            // Only draw in the area of the missing tiles to avoid drawing over
+            // tiles that are already there.
+            var missingClip = new Rectangle(
+                    x + (int) Math.floor(missingArea.x / deviceScale),
+                    y + (int) Math.floor(missingArea.y / deviceScale),
+                    (int) Math.ceil(missingArea.width / deviceScale) + 1,
+                    (int) Math.ceil(missingArea.height / deviceScale) + 1);
+            drawInterimImage(gfx, x, y, missingClip, component, true);
+        }
+    }
+
+    // Draws the best available interim image, stretched to the current scale,
+    // in an area of the map.
+    private void drawInterimImage(
+            Graphics2D gfx,
+            int x,
+            int y,
+            @Nullable Rectangle clip,
+            @Nullable JComponent component,
+            boolean requestRenders) {
+        var interimImage = getInterimImage(requestRenders);
+        if (interimImage == null) {
+            return;
+        }
+        var gfx2 = (Graphics2D) gfx.create();
+        if (clip != null) {
+            gfx2.clipRect(clip.x, clip.y, clip.width, clip.height);
         }
+        // Stretch the image to the current scale.
+        var stretch = scale / interimImage.scale() / deviceScale;
+        gfx2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        gfx2.translate(x, y);
+        gfx2.scale(stretch, stretch);
+        screenImages.draw(gfx2, interimImage.image(), 0, 0, component);
+        gfx2.dispose();
     }
 
-    // Invalidates the cached image.
-    private void invalidateCache() {
-        if (cachedImageFuture != null) {
-            cachedImageFuture.cancel(true);
+    /**
+     * Gets the number of tiles that were drawn from the cache by
+     * {@link #render}. A pyramid level that is drawn in place of the tiles
+     * counts as one tile.
+     *
+     * @return The number of cached tiles that have been drawn.
+     */
+    long getTileHits() {
+        return tileHits;
+    }
+
+    /**
+     * Gets the number of tiles that {@link #render} had to request because
+     * they weren't cached.
+     *
+     * @return The number of missing tiles that have been requested.
+     */
+    long getTileMisses() {
+        return tileMisses;
+    }
+
+    // Gets the rendered pyramid level that is closest to the current scale,
+    // preferring larger levels, and starts rendering the ideal level if it
+    // isn't available yet and renders are allowed. If no level has been
+    // rendered yet, the preview is used instead. Returns null if there isn't
+    // a preview yet either.
+    private @Nullable InterimImage getInterimImage(boolean requestRenders) {
+        var idealLevel = getPyramidLevel(scale);
+        var image = tileCache.peek(createLevelKey(idealLevel));
+        if (image != null) {
+            return new InterimImage(getPyramidScale(idealLevel), image);
+        }
+
+        InterimImage interimImage = null;
+        for (int level = idealLevel + 1; level <= MAX_PYRAMID_LEVEL && interimImage == null; level++) {
+            image = tileCache.peek(createLevelKey(level));
+            if (image != null) {
+                interimImage = new InterimImage(getPyramidScale(level), image);
+            }
+        }
+        for (int level = idealLevel - 1; level >= MIN_PYRAMID_LEVEL && interimImage == null; level--) {
+            image = tileCache.peek(createLevelKey(level));
+            if (image != null) {
+                interimImage = new InterimImage(getPyramidScale(level), image);
+            }
+        }
+        if (interimImage == null) {
+            image = tileCache.peek(createPreviewKey());
+            if (image != null) {
+                interimImage = new InterimImage(PREVIEW_SCALE, image);
+            } else if (requestRenders) {
+                // Render the preview before the pyramid level, since it's faster.
+                requestPreview();
+            }
+        }
+        if (requestRenders) {
+            requestPyramidLevel(idealLevel);
         }
-        cachedImageFuture = null;
-        System.gc();
+        return interimImage;
+    }
+
+    // Schedules a preview of the current map to be rendered.
+    private void requestPreview() {
+        var key = createPreviewKey();
+        var requestTime = System.nanoTime();
+        scheduler.submit(this, RenderScheduler.Priority.PREVIEW, () -> {
+            // A preview that was requested while this one was being rendered
+            // doesn't need to be rendered again.
+            if (!tileCache.contains(key)) {
+                tileCache.put(key, renderPreview(key));
+                RenderStats.getShared().recordRenderLatency(System.nanoTime() - requestTime);
+                repaintCallback.run();
+            }
+        });
     }
 
-    // Renders the SVG diagram to an image.
-    private static BufferedImage renderSvgToImage(SVGDiagram diagram, double scale, double deviceScale) {
-        var width = (int) Math.ceil(diagram.getWidth() * scale * deviceScale);
-        var height = (int) Math.ceil(diagram.getHeight() * scale * deviceScale);
+    // Renders a preview of a map quickly, without antialiasing.
+    private static BufferedImage renderPreview(MapTileCache.PreviewKey key) {
+        var geometry = loadGeometry(key.mapUri());
+        var width = (int) Math.ceil(geometry.getSize().width() * PREVIEW_SCALE * key.deviceScale());
+        var height = (int) Math.ceil(geometry.getSize().height() * PREVIEW_SCALE * key.deviceScale());
 
         var image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
-        var gfx = (Graphics2D) image.createGraphics();
-        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        gfx.scale(deviceScale, deviceScale);
-
+        var gfx = image.createGraphics();
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
         gfx.setPaint(Color.WHITE);
         gfx.fillRect(0, 0, width, height);
-        renderSvgToGraphicsDestructive(diagram, gfx, 0, 0, scale, null);
+        gfx.scale(key.deviceScale(), key.deviceScale());
+        geometry.render(gfx, 0, 0, PREVIEW_SCALE);
+        gfx.dispose();
+        return image;
+    }
+
+    // Schedules the size of the current map, and optionally a pyramid level,
+    // to be read from the disk cache. The size is worked out from the SVG if
+    // it isn't cached. Replaces any read that was requested before but hasn't
+    // started yet.
+    private void requestDiskRead(@Nullable MapTileCache.LevelKey key) {
+        var mapUri = this.mapUri;
+        scheduler.submit(this, RenderScheduler.Priority.DISK_READS, () -> {
+            var loaded = false;
+            if (!MAP_SIZES.containsKey(mapUri)) {
+                loadMapSize(mapUri);
+                loaded = true;
+            }
+            if (key != null && tileCache.peek(key) == null) {
+                if (getCachedLevel(key) == null) {
+                    DISK_MISSES.add(key);
+                }
+                loaded = true;
+            }
+            if (loaded) {
+                repaintCallback.run();
+            }
+        });
+    }
+
+    // Schedules a pyramid level to be rendered, replacing any level that was
+    // requested before but hasn't started yet.
+    private void requestPyramidLevel(int level) {
+        var key = createLevelKey(level);
+        var requestTime = System.nanoTime();
+        scheduler.submit(this, RenderScheduler.Priority.PYRAMID, () -> {
+            if (tileCache.peek(key) == null) {
+                getOrRenderLevel(key);
+                RenderStats.getShared().recordRenderLatency(System.nanoTime() - requestTime);
+                repaintCallback.run();
+            }
+        });
+    }
 
+    // Gets a pyramid level from memory or from the disk cache, without
+    // rendering it. Returns null if the level isn't cached. This reads from
+    // the disk, so it must not be called on the event dispatch thread.
+    private static @Nullable BufferedImage getCachedLevel(MapTileCache.LevelKey key) {
+        var tileCache = MapTileCache.getShared();
+        var image = tileCache.get(key);
+        var diskCache = MapRenderCache.diskCache;
+        if (image == null && diskCache != null) {
+            image = diskCache.readImage(key.mapUri(), getPyramidScale(key.level()), key.deviceScale());
+            if (image != null) {
+                tileCache.put(key, image);
+            }
+        }
+        return image;
+    }
+
+    // Gets a pyramid level from a cache, or renders it and caches the result.
+    private static BufferedImage getOrRenderLevel(MapTileCache.LevelKey key) {
+        var image = getCachedLevel(key);
+        if (image != null) {
+            return image;
+        }
+
+        var mapSize = loadMapSize(key.mapUri());
+        var levelScale = getPyramidScale(key.level());
+        image = ParallelMapRenderer.renderImage(key.mapUri(), mapSize, levelScale, key.deviceScale());
+        MapTileCache.getShared().put(key, image);
+
+        var diskCache = MapRenderCache.diskCache;
+        if (diskCache != null) {
+            diskCache.writeImage(key.mapUri(), mapSize, levelScale, key.deviceScale(), image);
+            DISK_MISSES.remove(key);
+        }
         return image;
     }
 
-    // The Graphics2D passed to this method should not be used afterward.
-    private static void renderSvgToGraphicsDestructive(
-            SVGDiagram diagram, Graphics2D gfx, int x, int y, double scale, @Nullable JComponent component) {
-        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        gfx.translate(x, y);
-        gfx.scale(scale, scale);
+    // Gets the size of a map, preferring the disk cache so the SVG doesn't
+    // have to be loaded if its images are cached. The size is kept once it
+    // is known. This may hash or parse the SVG, so it must not be called on
+    // the event dispatch thread.
+    private static MapSize loadMapSize(URI mapUri) {
+        var mapSize = MAP_SIZES.get(mapUri);
+        if (mapSize != null) {
+            return mapSize;
+        }
+        var diskCache = MapRenderCache.diskCache;
+        mapSize = diskCache != null ? diskCache.readMapSize(mapUri) : null;
+        if (mapSize == null) {
+            mapSize = loadGeometry(mapUri).getSize();
+        }
+        MAP_SIZES.put(mapUri, mapSize);
+        return mapSize;
+    }
+
+    // Gets the pyramid level that should be used for the given scale.
+    private static int getPyramidLevel(double scale) {
+        var level = (int) Math.ceil(Math.log(scale) / Math.log(2.0));
+        return Math.max(MIN_PYRAMID_LEVEL, Math.min(MAX_PYRAMID_LEVEL, level));
+    }
+
+    /**
+     * Gets the scale that a pyramid level is rendered at.
+     *
+     * @param level The pyramid level.
+     * @return      The scale of the level.
+     */
+    static double getPyramidScale(int level) {
+        return Math.scalb(1.0, level);
+    }
+
+    // Creates the key of a tile of the current map at the current scale.
+    private MapTileCache.TileKey createTileKey(int column, int row) {
+        return new MapTileCache.TileKey(mapUri, scale, deviceScale, column, row);
+    }
+
+    // Creates the key of a pyramid level of the current map.
+    private MapTileCache.LevelKey createLevelKey(int level) {
+        return new MapTileCache.LevelKey(mapUri, level, deviceScale);
+    }
+
+    // Creates the key of the preview of the current map.
+    private MapTileCache.PreviewKey createPreviewKey() {
+        return new MapTileCache.PreviewKey(mapUri, deviceScale);
+    }
 
-        var mapPath = diagram.getRoot().getChild("map");
-        var lineThickness = Math.min(1.0 / scale, 1.0);
+    // Adds a tile to the render queue, and schedules the queue to be rendered.
+    private void requestTile(MapTileCache.TileKey key) {
+        synchronized (this) {
+            requestedTiles.putIfAbsent(key, System.nanoTime());
+        }
+        scheduler.submit(this, RenderScheduler.Priority.VISIBLE_TILES, this::renderRequestedTiles);
+    }
 
-        // Render the map SVG to an image and cache the result.
-        try {
-            if (mapPath != null) {
-                mapPath.setAttribute("stroke-width", 2, Double.toString(lineThickness));
+    // Renders small batches of tiles from the render queue until it is empty.
+    // The queue is emptied whenever the map or scale changes, so keeping the
+    // batches small stops tiles that are no longer visible from delaying the
+    // ones that are.
+    private void renderRequestedTiles() {
+        var batchSize = ParallelMapRenderer.getParallelism() * 2;
+        while (true) {
+            var keys = new ArrayList<MapTileCache.TileKey>();
+            var requestTimes = new HashMap<MapTileCache.TileKey, Long>();
+            synchronized (this) {
+                var iterator = requestedTiles.entrySet().iterator();
+                while (iterator.hasNext() && keys.size() < batchSize) {
+                    var entry = iterator.next();
+                    iterator.remove();
+                    if (!tileCache.contains(entry.getKey())) {
+                        keys.add(entry.getKey());
+                        requestTimes.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            if (keys.isEmpty()) {
+                return;
             }
-            diagram.render(component, gfx);
-        } catch (SVGException ex) {
-            throw new RuntimeException(ex);
+
+            ParallelMapRenderer.renderTiles(keys, (key, tile) -> {
+                tileCache.put(key, tile);
+                var requestTime = Objects.requireNonNull(requestTimes.get(key));
+                RenderStats.getShared().recordRenderLatency(System.nanoTime() - requestTime);
+                repaintCallback.run();
+            });
         }
     }
+
+    // Invalidates the tiles that are waiting to be rendered.
+    private synchronized void invalidateCache() {
+        requestedTiles.clear();
+    }
+
+    // A whole-map image that is shown while tiles are being rendered.
+    private record InterimImage(double scale, BufferedImage image) {}
 }
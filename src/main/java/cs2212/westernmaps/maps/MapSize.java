@@ -0,0 +1,9 @@
+package cs2212.westernmaps.maps;
+
+/**
+ * The size of a map SVG at its default zoom level.
+ *
+ * @param width  The width of the map.
+ * @param height The height of the map.
+ */
+record MapSize(float width, float height) {}
@@ -0,0 +1,223 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A memory-bounded cache of rendered map images, shared by every map view.
+ *
+ * <p>Each rendered map is split into square tiles of {@link #TILE_SIZE} device
+ * pixels, which are identified by the map they belong to, the zoom level they
+ * were rendered at, and their column and row in the grid of tiles for that
+ * zoom level. Only the tiles that are actually visible get rendered, so the
+ * cache keeps working at any zoom level without allocating an image for the
+ * whole map. The whole-map images of each map's pyramid levels and previews
+ * are stored here as well.</p>
+ *
+ * <p>Since the images are keyed by the URI of their map, switching back to a
+ * floor or building that was recently viewed can reuse its images. When the
+ * total size of the cached images exceeds the memory budget, the least
+ * recently used images are evicted first, except for the image that was just
+ * added, which is kept even if it is larger than the whole budget. Otherwise
+ * the image would be rendered again as soon as it was requested. The budget
+ * can be changed with the {@code cs2212.westernmaps.renderCacheMegabytes}
+ * system property, down to a minimum of 64 megabytes.</p>
+ *
+ * <p>Instances of this class can be used concurrently by multiple threads.</p>
+ */
+public final class MapTileCache {
+    /** The width and height of a tile, in device pixels. */
+    static final int TILE_SIZE = 256;
+
+    private static final long DEFAULT_BUDGET_MEGABYTES = 128;
+    // The smallest budget that fits the largest pyramid level on a high-DPI
+    // display, along with a screen of tiles.
+    private static final long MIN_BUDGET_MEGABYTES = 64;
+
+    private static final MapTileCache SHARED = new MapTileCache(getBudgetMegabytes() * 1024 * 1024);
+
+    private final long budgetBytes;
+    private long sizeBytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    // Iteration order is least recently used first.
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Creates a new, empty cache.
+     *
+     * @param budgetBytes The maximum number of bytes of image data to keep.
+     */
+    MapTileCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Gets the cache that is shared by every map view in the application.
+     *
+     * @return The shared cache.
+     */
+    public static MapTileCache getShared() {
+        return SHARED;
+    }
+
+    // Gets the budget of the shared cache from the system property.
+    private static long getBudgetMegabytes() {
+        var megabytes = Long.getLong("cs2212.westernmaps.renderCacheMegabytes", DEFAULT_BUDGET_MEGABYTES);
+        return Math.max(MIN_BUDGET_MEGABYTES, megabytes);
+    }
+
+    /**
+     * Gets a cached image and marks it as recently used.
+     *
+     * <p>This counts as a hit or a miss in the cache's
+     * {@linkplain #getStatistics() statistics}.</p>
+     *
+     * @param key The image to look up.
+     * @return    The rendered image, or {@code null} if it is not cached.
+     */
+    synchronized @Nullable BufferedImage get(Key key) {
+        var image = images.get(key);
+        if (image != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return image;
+    }
+
+    /**
+     * Gets a cached image and marks it as recently used, without counting the
+     * lookup in the cache's statistics.
+     *
+     * <p>This is used when searching for a fallback image, where a missing
+     * image is expected.</p>
+     *
+     * @param key The image to look up.
+     * @return    The rendered image, or {@code null} if it is not cached.
+     */
+    synchronized @Nullable BufferedImage peek(Key key) {
+        return images.get(key);
+    }
+
+    /**
+     * Checks if an image is cached without marking it as recently used.
+     *
+     * @param key The image to look up.
+     * @return    Whether the image is cached.
+     */
+    synchronized boolean contains(Key key) {
+        return images.containsKey(key);
+    }
+
+    /**
+     * Adds a rendered image to the cache, evicting old images if necessary.
+     *
+     * @param key   The key of the image that was rendered.
+     * @param image The rendered image.
+     */
+    synchronized void put(Key key, BufferedImage image) {
+        var previous = images.put(key, image);
+        if (previous != null) {
+            sizeBytes -= sizeOf(previous);
+        }
+        sizeBytes += sizeOf(image);
+        evictToBudget(key);
+    }
+
+    /** Removes every image from the cache. */
+    public synchronized void clear() {
+        images.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * Gets a snapshot of the cache's counters, which can be used to decide on
+     * a memory budget.
+     *
+     * @return The current statistics of this cache.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions, images.size(), sizeBytes, budgetBytes);
+    }
+
+    // Removes least recently used images until the cache fits in its budget,
+    // or only the image that was just added is left.
+    private void evictToBudget(Key addedKey) {
+        Iterator<Map.Entry<Key, BufferedImage>> iterator = images.entrySet().iterator();
+        while (sizeBytes > budgetBytes && iterator.hasNext()) {
+            var entry = iterator.next();
+            if (entry.getKey().equals(addedKey)) {
+                // The added image is the most recently used, so it's last.
+                break;
+            }
+            sizeBytes -= sizeOf(entry.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    // Gets the number of bytes used by the pixels of an image.
+    private static long sizeOf(BufferedImage image) {
+        var buffer = image.getRaster().getDataBuffer();
+        if (buffer instanceof DataBufferByte) {
+            return buffer.getSize();
+        }
+        // Assume four bytes per pixel for any other image types.
+        return (long) buffer.getSize() * 4;
+    }
+
+    /** Identifies an image stored in the cache. */
+    sealed interface Key permits TileKey, LevelKey, PreviewKey {}
+
+    /**
+     * Identifies a single tile of a rendered map.
+     *
+     * @param mapUri      The URI of the map SVG that the tile belongs to.
+     * @param scale       The zoom level the tile was rendered at.
+     * @param deviceScale The scale of the display the tile was rendered for.
+     * @param column      The column of the tile, starting at zero on the left.
+     * @param row         The row of the tile, starting at zero at the top.
+     */
+    record TileKey(URI mapUri, double scale, double deviceScale, int column, int row) implements Key {}
+
+    /**
+     * Identifies the whole-map image of one level of a map's pyramid.
+     *
+     * @param mapUri      The URI of the map SVG that the image belongs to.
+     * @param level       The pyramid level, which is the base-2 logarithm of
+     *                    the scale the image was rendered at.
+     * @param deviceScale The scale of the display the image was rendered for.
+     */
+    record LevelKey(URI mapUri, int level, double deviceScale) implements Key {}
+
+    /**
+     * Identifies the low-quality preview of a map, which is shown before any
+     * other images of the map have been rendered.
+     *
+     * @param mapUri      The URI of the map SVG that the image belongs to.
+     * @param deviceScale The scale of the display the image was rendered for.
+     */
+    record PreviewKey(URI mapUri, double deviceScale) implements Key {}
+
+    /**
+     * A snapshot of the counters of a {@link MapTileCache}.
+     *
+     * @param hits        The number of lookups that found a cached image.
+     * @param misses      The number of lookups that did not find an image.
+     * @param evictions   The number of images removed to stay in the budget.
+     * @param imageCount  The number of images currently cached.
+     * @param sizeBytes   The total size of the cached images, in bytes.
+     * @param budgetBytes The maximum total size of the cached images.
+     */
+    public record Statistics(
+            long hits, long misses, long evictions, int imageCount, long sizeBytes, long budgetBytes) {}
+}
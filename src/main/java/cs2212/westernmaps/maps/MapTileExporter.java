@@ -0,0 +1,117 @@
+package cs2212.westernmaps.maps;
+
+import static cs2212.westernmaps.maps.MapTileCache.TILE_SIZE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders every tile of a map's pyramid levels to PNG files, for generating
+ * tiles ahead of time.
+ *
+ * <p>Tiles are the same as the ones shown by {@link MapRenderCache}: squares
+ * of {@value MapTileCache#TILE_SIZE} device pixels, cropped on the right and
+ * bottom edges of the map, at the zoom levels of its pyramid. They are
+ * rendered by the {@link ParallelMapRenderer} on every available processor,
+ * and each tile is written to disk as soon as it is rendered, so the whole
+ * map is never held in memory at once.</p>
+ *
+ * <p>The tiles of a level are written to a directory named after the level,
+ * as files named after their column and row. For example, the tile in the
+ * third column and first row of level -1 is {@code -1/2_0.png}.</p>
+ */
+public final class MapTileExporter {
+    private MapTileExporter() {}
+
+    /**
+     * Renders the tiles of every pyramid level of a map into a directory.
+     *
+     * <p>This blocks until every tile has been written. The directory is
+     * created if it doesn't exist, and existing tiles are replaced.</p>
+     *
+     * @param mapUri      The URI of the map SVG to render.
+     * @param directory   The directory to write the tiles to.
+     * @param deviceScale The scale of the display the tiles will be shown on.
+     * @return            A description of the rendered map and its levels.
+     * @throws IOException If a tile could not be written.
+     */
+    public static ExportedMap export(URI mapUri, Path directory, double deviceScale) throws IOException {
+        var mapSize = MapRenderCache.loadGeometry(mapUri).getSize();
+
+        var levels = new ArrayList<ExportedLevel>();
+        var keys = new ArrayList<MapTileCache.TileKey>();
+        for (int level = MapRenderCache.MIN_PYRAMID_LEVEL; level <= MapRenderCache.MAX_PYRAMID_LEVEL; level++) {
+            var scale = MapRenderCache.getPyramidScale(level);
+            var width = (int) Math.ceil(mapSize.width() * scale * deviceScale);
+            var height = (int) Math.ceil(mapSize.height() * scale * deviceScale);
+            var columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+            var rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+            levels.add(new ExportedLevel(level, scale, width, height, columns, rows));
+
+            Files.createDirectories(directory.resolve(Integer.toString(level)));
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    keys.add(new MapTileCache.TileKey(mapUri, scale, deviceScale, column, row));
+                }
+            }
+        }
+
+        // Render the tiles of every level together, so that the small levels
+        // don't leave most of the workers idle.
+        var tileCount = new AtomicInteger();
+        try {
+            ParallelMapRenderer.renderTiles(keys, (key, tile) -> {
+                // Pyramid scales are powers of two, so the level is the exponent.
+                var level = Math.getExponent(key.scale());
+                var file = directory.resolve(Integer.toString(level)).resolve(key.column() + "_" + key.row() + ".png");
+                try {
+                    ImageIO.write(tile, "png", file.toFile());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                tileCount.incrementAndGet();
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        return new ExportedMap(mapSize.width(), mapSize.height(), deviceScale, TILE_SIZE, tileCount.get(), levels);
+    }
+
+    /**
+     * A description of a map whose tiles were exported.
+     *
+     * @param width       The width of the map at its default zoom level.
+     * @param height      The height of the map at its default zoom level.
+     * @param deviceScale The scale of the display the tiles were rendered for.
+     * @param tileSize    The width and height of a tile, in device pixels.
+     * @param tileCount   The number of tiles that were written.
+     * @param levels      The pyramid levels that were rendered.
+     */
+    public record ExportedMap(
+            float width, float height, double deviceScale, int tileSize, int tileCount, List<ExportedLevel> levels) {
+        public ExportedMap {
+            levels = List.copyOf(levels);
+        }
+    }
+
+    /**
+     * A description of one pyramid level of an exported map.
+     *
+     * @param level   The pyramid level, which is also the name of the
+     *                directory its tiles are in.
+     * @param scale   The zoom level the tiles were rendered at.
+     * @param width   The width of the whole level, in device pixels.
+     * @param height  The height of the whole level, in device pixels.
+     * @param columns The number of columns of tiles.
+     * @param rows    The number of rows of tiles.
+     */
+    public record ExportedLevel(int level, double scale, int width, int height, int columns, int rows) {}
+}
@@ -1,14 +1,14 @@
 package cs2212.westernmaps.maps;
 
 import com.formdev.flatlaf.ui.FlatBorder;
-import com.kitfox.svg.SVGCache;
-import com.kitfox.svg.SVGUniverse;
 import cs2212.westernmaps.core.Layer;
 import cs2212.westernmaps.core.POI;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,24 +27,38 @@ import javax.swing.JPanel;
 public final class MapViewerPanel extends JPanel {
     // The size of the target area around a POI that will trigger a click event.
     private static final int POI_CLICK_TARGET_SIZE = 16;
-    private static final int POI_HOVER_CIRCLE_RADIUS = 18;
-    private static final Color POI_HOVER_CIRCLE_COLOR = new Color(0x00, 0x00, 0x00, 0x1F);
 
     // The color of the tooltip background and text.
     private static final Color POI_TOOLTIP_BACKGROUND_COLOR = new Color(0x00, 0x00, 0x00, 0xBF);
     private static final Color POI_TOOLTIP_FOREGROUND_COLOR = Color.WHITE;
 
+    // The size of the markers shown for clusters of POIs.
+    private static final int CLUSTER_MARKER_RADIUS = 13;
+    // The space left around a cluster's POIs when zooming in on them.
+    private static final int CLUSTER_ZOOM_PADDING = 64;
+    // The number of displayed POIs at which they are drawn into an overlay
+    // image, rather than drawn directly on every repaint.
+    private static final int POI_OVERLAY_THRESHOLD = 200;
+
     // The smallest and largest zoom levels allowed.
     private static final double ZOOM_OUT_LIMIT = 0.1;
     private static final double ZOOM_IN_LIMIT = 10.0;
 
-    // Data for the svg loading
-    private final SVGUniverse universe = SVGCache.getSVGUniverse();
     private final AffineTransform transform = new AffineTransform();
 
     // the cache the renders the map
     private final MapRenderCache renderCache;
 
+    // renders other maps in the background, once the first map has been shown
+    private final MapPrefetcher prefetcher = new MapPrefetcher();
+    private List<URI> pendingPrefetchUris = List.of();
+
+    // the icons of every layer, rendered once so POIs can be drawn quickly
+    private final PoiIconAtlas iconAtlas = new PoiIconAtlas();
+    // the scale of the display this panel was last painted on, which the POI
+    // icons are rendered at, even when they're drawn into the POI overlay
+    private double deviceScale = 1.0;
+
     // listeners for when you click, abd move a poi and when you move on the map
     private final List<Consumer<POI>> poiClickListeners = new ArrayList<>();
     private final List<BiConsumer<POI, Point>> poiMoveListeners = new ArrayList<>();
@@ -54,9 +68,16 @@ public final class MapViewerPanel extends JPanel {
     // data for what is currently being displayed
     private Component cursorComponent;
     private List<POI> displayedPois;
-
-    // the current hovered POI
+    // the displayed POIs, indexed by location for finding the hovered POI
+    private PoiSpatialIndex displayedPoiIndex;
+    // the visible POIs, grouped into clusters for each zoom level
+    private final PoiClusterIndex poiClusters = new PoiClusterIndex();
+    // the POIs that aren't dragged, drawn into an image when there are many
+    private final PoiOverlayCache poiOverlay = new PoiOverlayCache();
+
+    // the current hovered POI, or cluster of more than one POI
     private @Nullable POI hoveredPoi = null;
+    private @Nullable PoiClusterIndex.Cluster hoveredCluster = null;
 
     // the dragging data for a dragged POI
     private @Nullable POI draggedPoi = null;
@@ -71,7 +92,9 @@ public final class MapViewerPanel extends JPanel {
         cursorComponent = this;
 
         this.displayedPois = displayedPois;
-        this.renderCache = new MapRenderCache(universe.getDiagram(initialMapUri), 1.0);
+        this.displayedPoiIndex = new PoiSpatialIndex(displayedPois);
+        refreshClusters();
+        this.renderCache = new MapRenderCache(initialMapUri, 1.0, this::repaint);
 
         var mouseAdapter = new MouseAdapter() {
             private final Point lastMousePosition = new Point();
@@ -85,6 +108,8 @@ public final class MapViewerPanel extends JPanel {
             public void mousePressed(MouseEvent e) {
                 if (e.getButton() == MouseEvent.BUTTON1 && hoveredPoi != null) {
                     dragState = DragState.HOLDING_POI;
+                } else if (e.getButton() == MouseEvent.BUTTON1 && hoveredCluster != null) {
+                    dragState = DragState.HOLDING_CLUSTER;
                 } else if (e.getButton() == MouseEvent.BUTTON1 || e.getButton() == MouseEvent.BUTTON2) {
                     lastMousePosition.setLocation(e.getX(), e.getY());
                     dragState = DragState.PANNING_MAP;
@@ -107,10 +132,17 @@ public final class MapViewerPanel extends JPanel {
                         var poi = Objects.requireNonNull(hoveredPoi);
                         poiClickListeners.forEach(listener -> listener.accept(poi));
                     }
+                    case HOLDING_CLUSTER -> {
+                        var cluster = hoveredCluster;
+                        if (cluster != null) {
+                            zoomToCluster(cluster);
+                        }
+                    }
                     case DRAGGING_POI -> {
                         var poi = Objects.requireNonNull(draggedPoi);
                         poiMoveListeners.forEach(listener -> listener.accept(poi, draggedPoiLocation));
                         draggedPoi = null;
+                        poiOverlay.invalidate();
                         repaint();
                     }
                 }
@@ -154,9 +186,12 @@ public final class MapViewerPanel extends JPanel {
                                 return;
                             }
 
+                            // The POI is no longer drawn at its original location.
+                            repaintHovered();
                             dragState = DragState.DRAGGING_POI;
                             draggedPoi = poi;
                             hoveredPoi = null;
+                            poiOverlay.invalidate();
 
                             var location = new Point(e.getX(), e.getY());
                             try {
@@ -164,17 +199,21 @@ public final class MapViewerPanel extends JPanel {
                             } catch (NoninvertibleTransformException ex) {
                                 throw new RuntimeException(ex);
                             }
-                            repaint();
+                            repaintDragged();
                         }
                     }
+                    case HOLDING_CLUSTER -> {
+                        // Clusters can't be dragged.
+                    }
                     case DRAGGING_POI -> {
                         var location = new Point(e.getX(), e.getY());
+                        repaintDragged();
                         try {
                             transform.inverseTransform(location, draggedPoiLocation);
                         } catch (NoninvertibleTransformException ex) {
                             throw new RuntimeException(ex);
                         }
-                        repaint();
+                        repaintDragged();
                     }
                 }
             }
@@ -206,6 +245,8 @@ public final class MapViewerPanel extends JPanel {
                 transform.translate(-mouseLocation.x, -mouseLocation.y);
 
                 renderCache.setScale(transform.getScaleX());
+                // The POIs may be clustered differently at the new scale.
+                refreshHoveredPoi(e.getX(), e.getY());
                 repaint();
             }
         };
@@ -218,21 +259,21 @@ public final class MapViewerPanel extends JPanel {
         setFocusable(true);
         addFocusListener(new FocusListener() {
             /**
-             * when focus is gained than the panel is repainted
+             * when focus is gained than the border is repainted
              * @param e the event to be processed
              */
             @Override
             public void focusGained(FocusEvent e) {
-                repaint();
+                repaintBorder();
             }
 
             /**
-             * When focus is lost than the panel is repainted
+             * When focus is lost than the border is repainted
              * @param e the event to be processed
              */
             @Override
             public void focusLost(FocusEvent e) {
-                repaint();
+                repaintBorder();
             }
         });
     }
@@ -298,10 +339,33 @@ public final class MapViewerPanel extends JPanel {
      * @param uri The URI of the map to display.
      */
     public void setCurrentMapUri(URI uri) {
-        renderCache.setDiagram(universe.getDiagram(uri));
+        renderCache.setMapUri(uri);
         repaint();
     }
 
+    /**
+     * Loads and renders other maps in the background, so that they can be
+     * shown immediately when {@link #setCurrentMapUri} is called.
+     *
+     * <p>Prefetching starts after the current map has been painted, and
+     * replaces any prefetching that was previously started.</p>
+     *
+     * @param uris The URIs of the maps to prefetch, most important first.
+     */
+    public void prefetchMaps(List<URI> uris) {
+        prefetcher.cancel();
+        pendingPrefetchUris = List.copyOf(uris);
+        repaint();
+    }
+
+    /**
+     * Stops prefetching maps that were passed to {@link #prefetchMaps}.
+     */
+    public void cancelPrefetch() {
+        prefetcher.cancel();
+        pendingPrefetchUris = List.of();
+    }
+
     /**
      * Sets the POIs that are currently displayed on the map.
      *
@@ -309,6 +373,8 @@ public final class MapViewerPanel extends JPanel {
      */
     public void setDisplayedPois(List<POI> pois) {
         displayedPois = pois;
+        displayedPoiIndex = new PoiSpatialIndex(pois);
+        refreshClusters();
         // TODO: Refresh the hovered POI here.
         repaint();
     }
@@ -358,29 +424,171 @@ public final class MapViewerPanel extends JPanel {
      */
     public void setPoiVisibleCondition(@Nullable Predicate<POI> condition) {
         poiVisibleCondition = Objects.requireNonNullElse(condition, poi -> true);
+        refreshClusters();
+    }
+
+    /**
+     * Updates the map after the result of the predicate passed to
+     * {@link #setPoiVisibleCondition} has changed for some POIs.
+     */
+    public void refreshPoiVisibility() {
+        refreshClusters();
+        repaint();
+    }
+
+    // Clusters the POIs that are visible. Only the POIs that changed since the
+    // last time are moved between clusters.
+    private void refreshClusters() {
+        poiClusters.update(displayedPois.stream().filter(poiVisibleCondition).toList());
+        poiOverlay.invalidate();
+        // The hovered cluster may have changed, and will be found again when
+        // the mouse moves.
+        hoveredCluster = null;
+    }
+
+    // Zooms in on the POIs in a cluster, at least far enough to split it up.
+    private void zoomToCluster(PoiClusterIndex.Cluster cluster) {
+        var bounds = cluster.getBounds();
+        var availableWidth = Math.max(1, getWidth() - CLUSTER_ZOOM_PADDING * 2);
+        var availableHeight = Math.max(1, getHeight() - CLUSTER_ZOOM_PADDING * 2);
+        var fitScale = Math.min(
+                (double) availableWidth / Math.max(1, bounds.width),
+                (double) availableHeight / Math.max(1, bounds.height));
+        var scale = Math.min(ZOOM_IN_LIMIT, Math.max(fitScale, PoiClusterIndex.getSplitScale(cluster.getBand())));
+
+        // Put the center of the cluster in the center of the view.
+        transform.setToTranslation(getWidth() / 2.0, getHeight() / 2.0);
+        transform.scale(scale, scale);
+        transform.translate(-bounds.getCenterX(), -bounds.getCenterY());
+
+        renderCache.setScale(transform.getScaleX());
+        hoveredCluster = null;
+        repaint();
+    }
+
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        // Once the panel is no longer shown, nothing it requested needs to be
+        // rendered anymore, and its copies of the map can be released.
+        renderCache.cancelPendingWork();
+        renderCache.releaseScreenImages();
+        poiOverlay.clear();
+        cancelPrefetch();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        var paintStart = System.nanoTime();
+        var tileHitsBefore = renderCache.getTileHits();
+        var tileMissesBefore = renderCache.getTileMisses();
         super.paintComponent(g);
 
         var gfx = (Graphics2D) g.create();
         gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        deviceScale = gfx.getDeviceConfiguration().getDefaultTransform().getScaleX();
 
         // Render the cached map image at the correct position.
         var mapPosition = new Point(0, 0);
         transform.transform(mapPosition, mapPosition);
         renderCache.render(gfx, mapPosition.x, mapPosition.y, this);
 
-        // Render icons for each displayed POI. POIs are rendered in reverse
-        // order so that the first POI in the list gets displayed on top.
-        for (int index = displayedPois.size() - 1; index >= 0; index--) {
-            var poi = displayedPois.get(index);
+        // Now that the current map is shown, start preparing the other maps.
+        if (!pendingPrefetchUris.isEmpty()) {
+            prefetcher.start(pendingPrefetchUris, deviceScale);
+            pendingPrefetchUris = List.of();
+        }
+
+        if (displayedPois.size() >= POI_OVERLAY_THRESHOLD) {
+            // Draw the POIs from the overlay, which includes the hovered POI.
+            // It is drawn again on top, which hides the copy in the overlay.
+            PoiOverlayCache.Renderer renderer = (overlayGfx, area) -> renderPois(overlayGfx, area, false);
+            poiOverlay.draw(gfx, transform, getWidth(), getHeight(), renderer);
+        } else {
+            // Only POIs in the area being painted need to be drawn.
+            var clip = Objects.requireNonNullElse(gfx.getClipBounds(), new Rectangle(getWidth(), getHeight()));
+            renderPois(gfx, clip, true);
+        }
+
+        // Render the hovered and dragged POIs.
+        if (hoveredCluster != null) {
+            renderCluster(gfx, hoveredCluster, true);
+            renderPoiTooltip(gfx, getClusterTooltip(hoveredCluster), hoveredCluster.getX(), hoveredCluster.getY());
+        }
+        if (hoveredPoi != null) {
+            renderPoiIcon(gfx, hoveredPoi, true);
+            renderPoiTooltip(gfx, hoveredPoi);
+        }
+        if (draggedPoi != null) {
+            renderPoiIcon(gfx, draggedPoi.layer(), draggedPoiLocation.x, draggedPoiLocation.y, true);
+            renderPoiTooltip(gfx, draggedPoi.name(), draggedPoiLocation.x, draggedPoiLocation.y);
+        }
+
+        if (RenderStats.isEnabled()) {
+            var stats = RenderStats.getShared();
+            stats.recordPaint(
+                    System.nanoTime() - paintStart,
+                    renderCache.getTileHits() - tileHitsBefore,
+                    renderCache.getTileMisses() - tileMissesBefore);
+            if (stats.isOverlayVisible()) {
+                stats.drawOverlay(gfx, new Rectangle(getWidth(), getHeight()));
+            }
+        }
+    }
+
+    // Renders the POIs and clusters inside an area of this component, except
+    // for the dragged POI, and the hovered POI or cluster if requested.
+    private void renderPois(Graphics2D gfx, Rectangle area, boolean skipHovered) {
+        // The area is extended so that icons partly inside it are drawn too.
+        var mapArea = getMapArea(area, PoiClusterIndex.CELL_SIZE);
+        var skippedPoi = skipHovered ? hoveredPoi : null;
+
+        if (PoiClusterIndex.isClustered(transform.getScaleX())) {
+            // Render a marker for each cluster, or the icon of the POI if
+            // there is only one.
+            var band = PoiClusterIndex.getBand(transform.getScaleX());
+            for (var cluster : poiClusters.getClustersInArea(band, mapArea)) {
+                if (cluster.size() > 1) {
+                    if (!skipHovered || cluster != hoveredCluster) {
+                        renderCluster(gfx, cluster, false);
+                    }
+                    continue;
+                }
+                var poi = cluster.getAnyPoi();
+                if (poi != skippedPoi && poi != draggedPoi) {
+                    renderPoiIcon(gfx, poi, false);
+                }
+            }
+        } else {
+            renderPoiIcons(gfx, displayedPoiIndex.getPoisInArea(mapArea), skippedPoi);
+        }
+    }
+
+    // Converts an area of this component to map-space, after extending it by
+    // a margin on every side.
+    private Rectangle2D getMapArea(Rectangle area, int margin) {
+        var topLeft = new Point2D.Double(area.getMinX() - margin, area.getMinY() - margin);
+        var bottomRight = new Point2D.Double(area.getMaxX() + margin, area.getMaxY() + margin);
+        try {
+            transform.inverseTransform(topLeft, topLeft);
+            transform.inverseTransform(bottomRight, bottomRight);
+        } catch (NoninvertibleTransformException ex) {
+            throw new RuntimeException(ex);
+        }
+        return new Rectangle2D.Double(topLeft.x, topLeft.y, bottomRight.x - topLeft.x, bottomRight.y - topLeft.y);
+    }
+
+    // rendering the icons of POIs that aren't skipped or dragged
+    private void renderPoiIcons(Graphics2D gfx, List<POI> pois, @Nullable POI skippedPoi) {
+        // POIs are rendered in reverse order so that the first POI in the list
+        // gets displayed on top.
+        for (int index = pois.size() - 1; index >= 0; index--) {
+            var poi = pois.get(index);
 
             // If the POI is being hovered or dragged, skip it since it will be
             // rendered on top of everything else later. Comparison by reference
             // is intentional.
-            if (poi == hoveredPoi || poi == draggedPoi) {
+            if (poi == skippedPoi || poi == draggedPoi) {
                 continue;
             }
             // If the POI's layer is not visible, skip it.
@@ -390,16 +598,6 @@ public final class MapViewerPanel extends JPanel {
 
             renderPoiIcon(gfx, poi, false);
         }
-
-        // Render the hovered and dragged POIs.
-        if (hoveredPoi != null) {
-            renderPoiIcon(gfx, hoveredPoi, true);
-            renderPoiTooltip(gfx, hoveredPoi);
-        }
-        if (draggedPoi != null) {
-            renderPoiIcon(gfx, draggedPoi.layer(), draggedPoiLocation.x, draggedPoiLocation.y, true);
-            renderPoiTooltip(gfx, draggedPoi.name(), draggedPoiLocation.x, draggedPoiLocation.y);
-        }
     }
 
     // rendering a specific POI icon
@@ -414,17 +612,34 @@ public final class MapViewerPanel extends JPanel {
         var location = new Point(x, y);
         transform.transform(location, location);
 
+        // Draw the POI icon, along with the hover circle if needed.
+        iconAtlas.draw(gfx, layer, location.x, location.y, hoverCircle, this, deviceScale);
+    }
+
+    // rendering the marker of a cluster, with the number of POIs in it
+    private void renderCluster(Graphics2D gfx, PoiClusterIndex.Cluster cluster, boolean hoverCircle) {
+        var location = new Point(cluster.getX(), cluster.getY());
+        transform.transform(location, location);
+
         if (hoverCircle) {
-            var radius = POI_HOVER_CIRCLE_RADIUS;
-            gfx.setPaint(POI_HOVER_CIRCLE_COLOR);
+            var radius = PoiIconAtlas.HOVER_CIRCLE_RADIUS;
+            gfx.setPaint(PoiIconAtlas.HOVER_CIRCLE_COLOR);
             gfx.fillOval(location.x - radius, location.y - radius, radius * 2, radius * 2);
         }
 
-        // Offset the location so that the icon is centered on the POI.
-        var icon = layer.getIcon();
-        location.translate(-icon.getIconWidth() / 2, -icon.getIconHeight() / 2);
-        // Draw the POI icon.
-        icon.paintIcon(this, gfx, location.x, location.y);
+        var radius = CLUSTER_MARKER_RADIUS;
+        gfx.setPaint(POI_TOOLTIP_FOREGROUND_COLOR);
+        gfx.fillOval(location.x - radius - 2, location.y - radius - 2, radius * 2 + 4, radius * 2 + 4);
+        gfx.setPaint(POI_TOOLTIP_BACKGROUND_COLOR);
+        gfx.fillOval(location.x - radius, location.y - radius, radius * 2, radius * 2);
+
+        var text = Integer.toString(cluster.size());
+        var metrics = gfx.getFontMetrics();
+        gfx.setPaint(POI_TOOLTIP_FOREGROUND_COLOR);
+        gfx.drawString(
+                text,
+                location.x - metrics.stringWidth(text) / 2,
+                location.y + (metrics.getAscent() - metrics.getDescent()) / 2);
     }
 
     // rendering the tooltip for a specific POI
@@ -450,15 +665,79 @@ public final class MapViewerPanel extends JPanel {
         gfx.drawString(text, x + 8, y + 2 + 13);
     }
 
+    // the tooltip text shown for a cluster
+    private static String getClusterTooltip(PoiClusterIndex.Cluster cluster) {
+        return cluster.size() + " POIs";
+    }
+
+    // Repaints the area covered by the hovered POI or cluster.
+    private void repaintHovered() {
+        if (hoveredPoi != null) {
+            repaint(getHoverBounds(hoveredPoi.x(), hoveredPoi.y(), hoveredPoi.name()));
+        }
+        if (hoveredCluster != null) {
+            repaint(getHoverBounds(hoveredCluster.getX(), hoveredCluster.getY(), getClusterTooltip(hoveredCluster)));
+        }
+    }
+
+    // Repaints the area covered by the dragged POI at its current location.
+    private void repaintDragged() {
+        if (draggedPoi != null) {
+            repaint(getHoverBounds(draggedPoiLocation.x, draggedPoiLocation.y, draggedPoi.name()));
+        }
+    }
+
+    // Gets the area covered by a hovered icon at a location in map-space,
+    // along with its hover circle and tooltip.
+    private Rectangle getHoverBounds(int x, int y, String tooltip) {
+        var location = new Point(x, y);
+        transform.transform(location, location);
+
+        var size = PoiIconAtlas.CELL_SIZE;
+        var bounds = new Rectangle(location.x - size / 2, location.y - size / 2, size, size);
+        // This matches the tooltip drawn by renderPoiTooltip.
+        var textWidth = getFontMetrics(getFont()).stringWidth(tooltip);
+        bounds.add(new Rectangle(location.x - textWidth / 2 - 8, location.y + 22, textWidth + 16, 20));
+        // Leave room for antialiasing.
+        bounds.grow(1, 1);
+        return bounds;
+    }
+
+    // Repaints the border right away, which shows whether this panel has
+    // focus. Each side is painted separately, since repainting them together
+    // would repaint everything between them.
+    private void repaintBorder() {
+        var insets = getInsets();
+        var width = getWidth();
+        var height = getHeight();
+        paintImmediately(0, 0, width, insets.top);
+        paintImmediately(0, height - insets.bottom, width, insets.bottom);
+        paintImmediately(0, insets.top, insets.left, height - insets.top - insets.bottom);
+        paintImmediately(width - insets.right, insets.top, insets.right, height - insets.top - insets.bottom);
+    }
+
     // refreshing a hovered POI
     private void refreshHoveredPoi(int mouseX, int mouseY) {
-        var hoveredPoi = getHoveredPoiByChebyshevDistance(mouseX, mouseY);
-        if (hoveredPoi != this.hoveredPoi) {
-            repaint();
+        POI hoveredPoi = null;
+        PoiClusterIndex.Cluster hoveredCluster = null;
+        if (PoiClusterIndex.isClustered(transform.getScaleX())) {
+            // A cluster of one POI is shown as that POI.
+            hoveredCluster = getHoveredClusterByChebyshevDistance(mouseX, mouseY);
+            if (hoveredCluster != null && hoveredCluster.size() == 1) {
+                hoveredPoi = hoveredCluster.getAnyPoi();
+                hoveredCluster = null;
+            }
+        } else {
+            hoveredPoi = getHoveredPoiByChebyshevDistance(mouseX, mouseY);
+        }
+        if (hoveredPoi != this.hoveredPoi || hoveredCluster != this.hoveredCluster) {
+            repaintHovered();
             this.hoveredPoi = hoveredPoi;
+            this.hoveredCluster = hoveredCluster;
+            repaintHovered();
         }
 
-        if (hoveredPoi != null) {
+        if (hoveredPoi != null || hoveredCluster != null) {
             cursorComponent.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
         } else {
             cursorComponent.setCursor(null);
@@ -469,17 +748,12 @@ public final class MapViewerPanel extends JPanel {
     private @Nullable POI getHoveredPoiByChebyshevDistance(int mouseX, int mouseY) {
         POI hoveredPoi = null;
         int hoveredPoiDistance = Integer.MAX_VALUE;
-        for (var poi : displayedPois) {
+        for (var poi : displayedPoiIndex.getPoisInArea(getHoverSearchArea(mouseX, mouseY))) {
             // If the is not visible, then it can't be hovered.
             if (!poiVisibleCondition.test(poi)) {
                 continue;
             }
 
-            // POI icons are rendered at the same size regardless of the map's
-            // scale, so we need to transform their locations manually.
-            var location = new Point(poi.x(), poi.y());
-            transform.transform(location, location);
-
             var distance = chebyshevDistanceToPoi(poi, mouseX, mouseY);
             if (distance <= POI_CLICK_TARGET_SIZE && distance < hoveredPoiDistance) {
                 hoveredPoi = poi;
@@ -489,6 +763,39 @@ public final class MapViewerPanel extends JPanel {
         return hoveredPoi;
     }
 
+    // getting the hovered cluster by Chebyshev distance, in the current band
+    private @Nullable PoiClusterIndex.Cluster getHoveredClusterByChebyshevDistance(int mouseX, int mouseY) {
+        var band = PoiClusterIndex.getBand(transform.getScaleX());
+        PoiClusterIndex.Cluster hoveredCluster = null;
+        int hoveredClusterDistance = Integer.MAX_VALUE;
+        for (var cluster : poiClusters.getClustersInArea(band, getHoverSearchArea(mouseX, mouseY))) {
+            var location = new Point(cluster.getX(), cluster.getY());
+            transform.transform(location, location);
+
+            var distance = chebyshevDistance(location.x, location.y, mouseX, mouseY);
+            if (distance <= POI_CLICK_TARGET_SIZE && distance < hoveredClusterDistance) {
+                hoveredCluster = cluster;
+                hoveredClusterDistance = distance;
+            }
+        }
+        return hoveredCluster;
+    }
+
+    // Gets the area of the map around the mouse that can contain the hovered
+    // POI. The area is slightly larger than the click target, since POI
+    // locations are rounded to the nearest pixel when they are transformed.
+    private Rectangle2D getHoverSearchArea(int mouseX, int mouseY) {
+        var mouseLocation = new Point2D.Double(mouseX, mouseY);
+        try {
+            transform.inverseTransform(mouseLocation, mouseLocation);
+        } catch (NoninvertibleTransformException ex) {
+            throw new RuntimeException(ex);
+        }
+        var searchRadius = (POI_CLICK_TARGET_SIZE + 1) / transform.getScaleX();
+        return new Rectangle2D.Double(
+                mouseLocation.x - searchRadius, mouseLocation.y - searchRadius, searchRadius * 2, searchRadius * 2);
+    }
+
     // converting chebyshev distance to POI distance
     private int chebyshevDistanceToPoi(POI poi, int mouseX, int mouseY) {
         // POI icons are rendered at the same size regardless of the map's
@@ -509,6 +816,7 @@ public final class MapViewerPanel extends JPanel {
         NONE,
         PANNING_MAP,
         HOLDING_POI,
+        HOLDING_CLUSTER,
         DRAGGING_POI,
     }
 }
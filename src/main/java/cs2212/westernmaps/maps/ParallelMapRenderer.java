@@ -0,0 +1,170 @@
+package cs2212.westernmaps.maps;
+
+import static cs2212.westernmaps.maps.MapTileCache.TILE_SIZE;
+
+import java.awt.Color;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+/**
+ * Renders map SVGs to images on every available processor.
+ *
+ * <p>Whole maps are split into horizontal bands, and batches of tiles are
+ * split into individual tiles, which are rendered in parallel on a shared
+ * {@link ForkJoinPool}. Every worker renders the same {@link MapGeometry},
+ * which is immutable, so no locking is needed between them.</p>
+ */
+final class ParallelMapRenderer {
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                // Make sure the thread will stop when all other threads exit.
+                thread.setDaemon(true);
+                thread.setName("Map Render Worker " + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false);
+
+    // The number of bands whole images are split into for each worker, which
+    // evens out the differences in detail between different parts of a map.
+    private static final int BANDS_PER_WORKER = 2;
+
+    private ParallelMapRenderer() {}
+
+    /**
+     * Gets the number of tiles or bands that are rendered at the same time.
+     *
+     * @return The number of worker threads.
+     */
+    static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * Renders a whole map to an image, using every worker thread.
+     *
+     * <p>This blocks until the whole image has been rendered.</p>
+     *
+     * @param mapUri      The URI of the map SVG to render.
+     * @param mapSize     The size of the map at its default zoom level.
+     * @param scale       The zoom level to render the map at.
+     * @param deviceScale The scale of the display the image will be shown on.
+     * @return            The rendered image.
+     */
+    static BufferedImage renderImage(URI mapUri, MapSize mapSize, double scale, double deviceScale) {
+        var width = (int) Math.ceil(mapSize.width() * scale * deviceScale);
+        var height = (int) Math.ceil(mapSize.height() * scale * deviceScale);
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+
+        // Every region has to walk the whole map path, even if most of it is
+        // clipped, so the image is split into a few horizontal bands per
+        // worker rather than into tiles. Each band is rendered into its own
+        // region of the image, so the workers never write to the same pixels.
+        var geometry = MapRenderCache.loadGeometry(mapUri);
+        var bandCount = Math.min(height, POOL.getParallelism() * BANDS_PER_WORKER);
+        POOL.invoke(new RangeAction(0, bandCount, index -> {
+            var top = (int) ((long) height * index / bandCount);
+            var bottom = (int) ((long) height * (index + 1) / bandCount);
+            var region = image.getSubimage(0, top, width, bottom - top);
+            renderRegion(geometry, region, 0, top, scale, deviceScale);
+        }));
+        return image;
+    }
+
+    /**
+     * Renders individual tiles of a map, using every worker thread.
+     *
+     * <p>This blocks until every tile has been rendered. Tiles are passed to
+     * {@code tileConsumer} as soon as they are rendered, from the worker
+     * thread that rendered them.</p>
+     *
+     * @param keys         The tiles to render.
+     * @param tileConsumer A function that receives each tile and its image.
+     */
+    static void renderTiles(
+            List<MapTileCache.TileKey> keys, BiConsumer<MapTileCache.TileKey, BufferedImage> tileConsumer) {
+        POOL.invoke(new RangeAction(0, keys.size(), index -> {
+            var key = keys.get(index);
+            tileConsumer.accept(key, renderTile(MapRenderCache.loadGeometry(key.mapUri()), key));
+        }));
+    }
+
+    /**
+     * Renders a single tile of a map on the calling thread.
+     *
+     * @param geometry The geometry of the map to render.
+     * @param key      The tile to render.
+     * @return         The rendered tile, which is cropped if it is on the right
+     *                 or bottom edge of the map.
+     */
+    static BufferedImage renderTile(MapGeometry geometry, MapTileCache.TileKey key) {
+        var mapWidth = (int) Math.ceil(geometry.getSize().width() * key.scale() * key.deviceScale());
+        var mapHeight = (int) Math.ceil(geometry.getSize().height() * key.scale() * key.deviceScale());
+
+        // Tiles on the right and bottom edges of the map are cropped.
+        var left = key.column() * TILE_SIZE;
+        var top = key.row() * TILE_SIZE;
+        var width = Math.max(1, Math.min(TILE_SIZE, mapWidth - left));
+        var height = Math.max(1, Math.min(TILE_SIZE, mapHeight - top));
+
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        renderRegion(geometry, image, left, top, key.scale(), key.deviceScale());
+        return image;
+    }
+
+    // Renders the part of the map starting at (left, top) in device pixels
+    // into the given image.
+    private static void renderRegion(
+            MapGeometry geometry, BufferedImage image, int left, int top, double scale, double deviceScale) {
+        var gfx = image.createGraphics();
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        gfx.setPaint(Color.WHITE);
+        gfx.fillRect(0, 0, image.getWidth(), image.getHeight());
+        // Let the geometry skip the parts of the map outside of the region.
+        gfx.clipRect(0, 0, image.getWidth(), image.getHeight());
+
+        gfx.translate(-left, -top);
+        gfx.scale(deviceScale, deviceScale);
+        geometry.render(gfx, 0, 0, scale);
+        gfx.dispose();
+    }
+
+    // Runs a function for every index in a range, splitting the range in half
+    // until each task only has one index.
+    private static final class RangeAction extends RecursiveAction {
+        private final int start;
+        private final int end;
+        private final IndexAction action;
+
+        RangeAction(int start, int end, IndexAction action) {
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (start < end) {
+                    action.run(start);
+                }
+                return;
+            }
+            var middle = (start + end) >>> 1;
+            invokeAll(new RangeAction(start, middle, action), new RangeAction(middle, end, action));
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexAction {
+        void run(int index);
+    }
+}
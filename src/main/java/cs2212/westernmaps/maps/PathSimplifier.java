@@ -0,0 +1,171 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * Simplifies paths for drawing at small sizes.
+ *
+ * <p>Curves are flattened into lines, and each subpath is simplified with the
+ * Douglas-Peucker algorithm, which removes points that are closer than a
+ * tolerance to the line between their neighbours. Subpaths that are smaller
+ * than a minimum size in both dimensions are dropped entirely, since they
+ * would only be drawn as noise.</p>
+ */
+final class PathSimplifier {
+    // The points of the subpath that is being simplified, as (x, y) pairs.
+    private float[] points = new float[256];
+    private int pointCount = 0;
+    private boolean closed = false;
+
+    private final Path2D.Float result = new Path2D.Float(Path2D.WIND_NON_ZERO);
+    private final double tolerance;
+    private final double minSize;
+
+    private PathSimplifier(double tolerance, double minSize) {
+        this.tolerance = tolerance;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Simplifies a path.
+     *
+     * @param path      The path to simplify.
+     * @param tolerance The maximum distance between the simplified path and
+     *                  the original path, in the path's coordinates.
+     * @param minSize   The smallest width or height of subpaths to keep, in
+     *                  the path's coordinates.
+     * @return          The simplified path, which only contains lines.
+     */
+    static Path2D.Float simplify(Path2D.Float path, double tolerance, double minSize) {
+        var simplifier = new PathSimplifier(tolerance, minSize);
+        var segment = new float[6];
+        var iterator = new FlatteningPathIterator(path.getPathIterator(null), tolerance);
+        for (; !iterator.isDone(); iterator.next()) {
+            switch (iterator.currentSegment(segment)) {
+                case PathIterator.SEG_MOVETO -> {
+                    simplifier.finishSubpath();
+                    simplifier.addPoint(segment[0], segment[1]);
+                }
+                case PathIterator.SEG_LINETO -> simplifier.addPoint(segment[0], segment[1]);
+                case PathIterator.SEG_CLOSE -> simplifier.closeSubpath();
+                default -> throw new IllegalStateException("Flattened paths only contain lines");
+            }
+        }
+        simplifier.finishSubpath();
+
+        simplifier.result.trimToSize();
+        return simplifier.result;
+    }
+
+    private void addPoint(float x, float y) {
+        if (pointCount * 2 == points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+
+    // Closes the current subpath. Any lines after it start from the same
+    // point as the closed subpath.
+    private void closeSubpath() {
+        if (pointCount == 0) {
+            return;
+        }
+        var startX = points[0];
+        var startY = points[1];
+        closed = true;
+        finishSubpath();
+        addPoint(startX, startY);
+    }
+
+    // Simplifies the current subpath and adds it to the result.
+    private void finishSubpath() {
+        if (pointCount > 1 || closed) {
+            var minX = Float.POSITIVE_INFINITY;
+            var minY = Float.POSITIVE_INFINITY;
+            var maxX = Float.NEGATIVE_INFINITY;
+            var maxY = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < pointCount; i++) {
+                minX = Math.min(minX, points[i * 2]);
+                minY = Math.min(minY, points[i * 2 + 1]);
+                maxX = Math.max(maxX, points[i * 2]);
+                maxY = Math.max(maxY, points[i * 2 + 1]);
+            }
+
+            if (maxX - minX >= minSize || maxY - minY >= minSize) {
+                var keep = findPointsToKeep();
+                result.moveTo(points[0], points[1]);
+                for (int i = 1; i < pointCount; i++) {
+                    if (keep[i]) {
+                        result.lineTo(points[i * 2], points[i * 2 + 1]);
+                    }
+                }
+                if (closed) {
+                    result.closePath();
+                }
+            }
+        }
+        pointCount = 0;
+        closed = false;
+    }
+
+    // Runs the Douglas-Peucker algorithm on the current subpath. A stack is
+    // used instead of recursion, since subpaths can have thousands of points.
+    private boolean[] findPointsToKeep() {
+        var keep = new boolean[pointCount];
+        keep[0] = true;
+        keep[pointCount - 1] = true;
+
+        var stack = new int[64];
+        var stackSize = 0;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = pointCount - 1;
+        while (stackSize > 0) {
+            var last = stack[--stackSize];
+            var first = stack[--stackSize];
+
+            // Find the point furthest from the line between the endpoints.
+            var furthest = -1;
+            var furthestDistance = tolerance;
+            for (int i = first + 1; i < last; i++) {
+                var distance = distanceToSegment(i, first, last);
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+
+            // If it's too far away, keep it and simplify both halves.
+            if (furthest >= 0) {
+                keep[furthest] = true;
+                if (stackSize + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[stackSize++] = first;
+                stack[stackSize++] = furthest;
+                stack[stackSize++] = furthest;
+                stack[stackSize++] = last;
+            }
+        }
+        return keep;
+    }
+
+    // Gets the distance from a point to the line segment between two others.
+    private double distanceToSegment(int point, int start, int end) {
+        double x = points[point * 2];
+        double y = points[point * 2 + 1];
+        double startX = points[start * 2];
+        double startY = points[start * 2 + 1];
+        var dx = points[end * 2] - startX;
+        var dy = points[end * 2 + 1] - startY;
+
+        var lengthSquared = dx * dx + dy * dy;
+        var t = lengthSquared == 0 ? 0 : ((x - startX) * dx + (y - startY) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(x - (startX + t * dx), y - (startY + t * dy));
+    }
+}
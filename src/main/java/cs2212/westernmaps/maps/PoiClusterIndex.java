@@ -0,0 +1,299 @@
+package cs2212.westernmaps.maps;
+
+import cs2212.westernmaps.core.POI;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups POIs that are close together into clusters, for each zoom level.
+ *
+ * <p>When a map with many POIs is zoomed out, their icons end up on top of
+ * each other. To avoid this, the map is divided into a grid of square cells
+ * that are {@value #CELL_SIZE} pixels wide on screen, and all POIs in the same
+ * cell are shown as one cluster. Since the size of a cell in map-space depends
+ * on the zoom level, the zoom levels are divided into bands, each covering a
+ * factor of two, and POIs are clustered separately for each band. Zoom levels
+ * of 1.0 and above aren't clustered at all.</p>
+ *
+ * <p>The clusters of every band are kept up to date as POIs are added,
+ * removed or moved: {@link #update} only moves the POIs that changed between
+ * cells, so the clusters don't have to be rebuilt from scratch.</p>
+ */
+final class PoiClusterIndex {
+    /** The width and height of a cluster cell on screen, in pixels. */
+    static final int CELL_SIZE = 32;
+
+    // The zoom bands, as powers of two. Band -4 covers scales from 0.0625 up
+    // to 0.125, and band -1 covers scales from 0.5 up to 1.0. POIs are only
+    // clustered when the map is zoomed out, so that they can always be
+    // clicked at the default zoom level.
+    private static final int MIN_BAND = -4;
+    private static final int MAX_BAND = -1;
+
+    // The clusters of each band, by the packed column and row of their cell.
+    private final List<Map<Long, Cluster>> bands = new ArrayList<>();
+
+    // The POIs that are currently clustered, compared by identity since a
+    // moved POI is replaced with a new record.
+    private final Set<POI> clusteredPois = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Creates an empty cluster index. */
+    PoiClusterIndex() {
+        for (int band = MIN_BAND; band <= MAX_BAND; band++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Determines whether POIs are clustered at a zoom level.
+     *
+     * @param scale The zoom level of the map.
+     * @return      Whether the scale is in one of the bands.
+     */
+    static boolean isClustered(double scale) {
+        return getUnclampedBand(scale) <= MAX_BAND;
+    }
+
+    /**
+     * Gets the zoom band that a scale belongs to.
+     *
+     * @param scale The zoom level of the map, which must be
+     *              {@linkplain #isClustered(double) clustered}.
+     * @return      The band containing the scale.
+     */
+    static int getBand(double scale) {
+        return Math.max(MIN_BAND, getUnclampedBand(scale));
+    }
+
+    private static int getUnclampedBand(double scale) {
+        return (int) Math.floor(Math.log(scale) / Math.log(2.0));
+    }
+
+    /**
+     * Gets the smallest scale at which a cluster of a band is split up.
+     *
+     * @param band The band of the cluster.
+     * @return     The scale at which the next band starts.
+     */
+    static double getSplitScale(int band) {
+        return Math.scalb(1.0, band + 1);
+    }
+
+    /**
+     * Changes the POIs that are clustered.
+     *
+     * <p>Only the POIs that aren't in the previous list, or aren't in the new
+     * list, are added to or removed from their clusters.</p>
+     *
+     * @param pois The POIs to cluster.
+     */
+    void update(List<POI> pois) {
+        var newPois = Collections.newSetFromMap(new IdentityHashMap<POI, Boolean>());
+        newPois.addAll(pois);
+
+        var iterator = clusteredPois.iterator();
+        while (iterator.hasNext()) {
+            var poi = iterator.next();
+            if (!newPois.contains(poi)) {
+                iterator.remove();
+                forEachBand((band, clusters) -> {
+                    var key = getCellKey(poi, band);
+                    var cluster = clusters.get(key);
+                    if (cluster != null && cluster.remove(poi) && cluster.size() == 0) {
+                        clusters.remove(key);
+                    }
+                });
+            }
+        }
+        for (var poi : pois) {
+            if (clusteredPois.add(poi)) {
+                forEachBand((band, clusters) -> {
+                    var cluster = clusters.computeIfAbsent(getCellKey(poi, band), key -> new Cluster(band, key));
+                    cluster.add(poi);
+                });
+            }
+        }
+    }
+
+    /**
+     * Gets the clusters of a band whose locations are inside an area.
+     *
+     * @param band The band to get clusters from.
+     * @param area The area to search, in map-space.
+     * @return     The clusters in the area, ordered by their cells from top
+     *             to bottom and left to right, so that overlapping markers
+     *             are always drawn in the same order.
+     */
+    List<Cluster> getClustersInArea(int band, Rectangle2D area) {
+        var clusters = bands.get(band - MIN_BAND);
+        var cellSize = getCellSize(band);
+        var firstColumn = (long) Math.floor(area.getMinX() / cellSize);
+        var lastColumn = (long) Math.floor(area.getMaxX() / cellSize);
+        var firstRow = (long) Math.floor(area.getMinY() / cellSize);
+        var lastRow = (long) Math.floor(area.getMaxY() / cellSize);
+
+        var result = new ArrayList<Cluster>();
+        var cellCount = (lastColumn - firstColumn + 1) * (lastRow - firstRow + 1);
+        if (cellCount < clusters.size()) {
+            // Look up each cell in the area.
+            for (var row = firstRow; row <= lastRow; row++) {
+                for (var column = firstColumn; column <= lastColumn; column++) {
+                    var cluster = clusters.get(packCell((int) column, (int) row));
+                    if (cluster != null && cluster.isInArea(area)) {
+                        result.add(cluster);
+                    }
+                }
+            }
+        } else {
+            // There are fewer clusters than cells, so check every cluster.
+            for (var cluster : clusters.values()) {
+                if (cluster.isInArea(area)) {
+                    result.add(cluster);
+                }
+            }
+            result.sort(Comparator.comparingInt(Cluster::getRow).thenComparingInt(Cluster::getColumn));
+        }
+        return result;
+    }
+
+    private void forEachBand(BandAction action) {
+        for (int band = MIN_BAND; band <= MAX_BAND; band++) {
+            action.run(band, bands.get(band - MIN_BAND));
+        }
+    }
+
+    // Gets the width and height of the cells of a band, in map-space.
+    private static double getCellSize(int band) {
+        return CELL_SIZE / Math.scalb(1.0, band);
+    }
+
+    private static long getCellKey(POI poi, int band) {
+        var cellSize = getCellSize(band);
+        return packCell((int) Math.floor(poi.x() / cellSize), (int) Math.floor(poi.y() / cellSize));
+    }
+
+    private static long packCell(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /** A group of POIs that are shown as one marker. */
+    static final class Cluster {
+        private final int band;
+        private final int column;
+        private final int row;
+        private final Set<POI> pois = Collections.newSetFromMap(new IdentityHashMap<>());
+        // The sums of the locations of the POIs, for finding their center.
+        private long sumX = 0;
+        private long sumY = 0;
+
+        private Cluster(int band, long cellKey) {
+            this.band = band;
+            this.column = (int) (cellKey >> 32);
+            this.row = (int) cellKey;
+        }
+
+        private void add(POI poi) {
+            if (pois.add(poi)) {
+                sumX += poi.x();
+                sumY += poi.y();
+            }
+        }
+
+        private boolean remove(POI poi) {
+            if (pois.remove(poi)) {
+                sumX -= poi.x();
+                sumY -= poi.y();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean isInArea(Rectangle2D area) {
+            return area.contains(getX(), getY());
+        }
+
+        private int getColumn() {
+            return column;
+        }
+
+        private int getRow() {
+            return row;
+        }
+
+        /**
+         * Gets the zoom band this cluster belongs to.
+         *
+         * @return The band of this cluster.
+         */
+        int getBand() {
+            return band;
+        }
+
+        /**
+         * Gets the number of POIs in this cluster.
+         *
+         * @return The number of POIs.
+         */
+        int size() {
+            return pois.size();
+        }
+
+        /**
+         * Gets any one of the POIs in this cluster, which is useful when the
+         * cluster only has one POI.
+         *
+         * @return A POI in this cluster.
+         */
+        POI getAnyPoi() {
+            return pois.iterator().next();
+        }
+
+        /**
+         * Gets the center of this cluster on the x-axis, in map-space.
+         *
+         * @return The average x-coordinate of the POIs.
+         */
+        int getX() {
+            return (int) Math.round((double) sumX / pois.size());
+        }
+
+        /**
+         * Gets the center of this cluster on the y-axis, in map-space.
+         *
+         * @return The average y-coordinate of the POIs.
+         */
+        int getY() {
+            return (int) Math.round((double) sumY / pois.size());
+        }
+
+        /**
+         * Gets the smallest rectangle containing every POI in this cluster.
+         *
+         * @return The bounds of the POIs, in map-space.
+         */
+        Rectangle getBounds() {
+            Rectangle bounds = null;
+            for (var poi : pois) {
+                if (bounds == null) {
+                    bounds = new Rectangle(poi.x(), poi.y(), 0, 0);
+                } else {
+                    bounds.add(poi.x(), poi.y());
+                }
+            }
+            return bounds != null ? bounds : new Rectangle();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BandAction {
+        void run(int band, Map<Long, Cluster> clusters);
+    }
+}
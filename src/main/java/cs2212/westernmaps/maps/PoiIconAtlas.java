@@ -0,0 +1,125 @@
+package cs2212.westernmaps.maps;
+
+import cs2212.westernmaps.core.Layer;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Draws POI icons from a single image that every icon is rendered into once.
+ *
+ * <p>Layer icons are SVGs, and painting one renders its vectors again every
+ * time. Instead, the icon of every {@link Layer} is rendered once into a cell
+ * of a shared image, both on its own and on top of the circle that is shown
+ * when the POI is hovered. Drawing a POI then only copies its cell, so
+ * painting a floor with thousands of POIs costs a few thousand small image
+ * copies rather than thousands of SVG renders.</p>
+ *
+ * <p>The image is rendered at the scale of the display, so icons stay sharp
+ * on high-DPI displays. The scale is passed in by the caller rather than
+ * taken from the {@link Graphics2D}, since icons are also drawn into
+ * off-screen images whose graphics report a scale of 1. The image is rendered
+ * again whenever the icons are drawn for a display with a different
+ * scale.</p>
+ */
+final class PoiIconAtlas {
+    /** The radius of the circle drawn behind hovered POIs. */
+    static final int HOVER_CIRCLE_RADIUS = 18;
+
+    /** The color of the circle drawn behind hovered POIs. */
+    static final Color HOVER_CIRCLE_COLOR = new Color(0x00, 0x00, 0x00, 0x1F);
+
+    /**
+     * The width and height of the area covered by an icon, which fits the
+     * hover circle with some space around it for antialiasing.
+     */
+    static final int CELL_SIZE = HOVER_CIRCLE_RADIUS * 2 + 4;
+
+    // The cells of each layer, with the plain icon in the first column and
+    // the hovered icon in the second column.
+    private @Nullable BufferedImage image = null;
+    private double deviceScale = 0.0;
+    private int cellPixels = 0;
+
+    /**
+     * Draws the icon of a layer, centered on a point.
+     *
+     * @param gfx         The {@link Graphics2D} to draw the icon to.
+     * @param layer       The layer whose icon to draw.
+     * @param x           The position of the center of the icon on the
+     *                    x-axis.
+     * @param y           The position of the center of the icon on the
+     *                    y-axis.
+     * @param hovered     Whether to draw the hover circle behind the icon.
+     * @param component   The component the icon is drawn on, which is passed
+     *                    to the icon when it is rendered.
+     * @param deviceScale The scale of the display the component is shown on.
+     */
+    void draw(Graphics2D gfx, Layer layer, int x, int y, boolean hovered, Component component, double deviceScale) {
+        var image = this.image;
+        if (image == null || deviceScale != this.deviceScale) {
+            var config = Objects.requireNonNullElse(component.getGraphicsConfiguration(), gfx.getDeviceConfiguration());
+            image = render(config, deviceScale, component);
+        }
+
+        var sourceX = hovered ? cellPixels : 0;
+        var sourceY = layer.ordinal() * cellPixels;
+        var left = x - CELL_SIZE / 2;
+        var top = y - CELL_SIZE / 2;
+        gfx.drawImage(
+                image,
+                left,
+                top,
+                left + CELL_SIZE,
+                top + CELL_SIZE,
+                sourceX,
+                sourceY,
+                sourceX + cellPixels,
+                sourceY + cellPixels,
+                null);
+    }
+
+    // Renders every icon into a new image at the given display scale.
+    private BufferedImage render(GraphicsConfiguration config, double scale, Component component) {
+        var layers = Layer.values();
+        cellPixels = (int) Math.ceil(CELL_SIZE * scale);
+        var image = config.createCompatibleImage(cellPixels * 2, cellPixels * layers.length, Transparency.TRANSLUCENT);
+
+        var gfx = image.createGraphics();
+        gfx.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        gfx.scale(scale, scale);
+        var cellSize = cellPixels / scale;
+        for (var layer : layers) {
+            var top = layer.ordinal() * cellSize;
+            for (int column = 0; column < 2; column++) {
+                var cellGfx = (Graphics2D) gfx.create();
+                cellGfx.translate(column * cellSize, top);
+                if (column == 1) {
+                    var radius = HOVER_CIRCLE_RADIUS;
+                    cellGfx.setPaint(HOVER_CIRCLE_COLOR);
+                    cellGfx.fillOval(CELL_SIZE / 2 - radius, CELL_SIZE / 2 - radius, radius * 2, radius * 2);
+                }
+
+                // Offset the location so that the icon is centered in the cell.
+                var icon = layer.getIcon();
+                icon.paintIcon(
+                        component,
+                        cellGfx,
+                        CELL_SIZE / 2 - icon.getIconWidth() / 2,
+                        CELL_SIZE / 2 - icon.getIconHeight() / 2);
+                cellGfx.dispose();
+            }
+        }
+        gfx.dispose();
+
+        this.image = image;
+        this.deviceScale = scale;
+        return image;
+    }
+}
@@ -0,0 +1,123 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the POIs drawn on a map in a transparent image, so they don't have to
+ * be drawn again every time the map is repainted.
+ *
+ * <p>The image covers the visible part of the map, along with a margin on
+ * every side, at the current zoom level. Panning the map only moves the
+ * image, until the visible part of the map leaves the area it covers. The
+ * image is drawn again when it is {@linkplain #invalidate() invalidated},
+ * which should be done whenever the POIs or their visibility change, and
+ * whenever the zoom level or the scale of the display changes.</p>
+ */
+final class PoiOverlayCache {
+    // The space around the visible part of the map that is also drawn, so
+    // that short pans don't have to draw the POIs again.
+    private static final int MARGIN = 256;
+
+    private @Nullable BufferedImage image = null;
+    private boolean valid = false;
+
+    // The area covered by the image, relative to the translation of the
+    // map's transform when it was drawn, along with the scales it was drawn
+    // at.
+    private final Rectangle area = new Rectangle();
+    private double translateX = 0.0;
+    private double translateY = 0.0;
+    private double scale = 0.0;
+    private double deviceScale = 0.0;
+
+    /** Marks the image as out of date, so it is drawn again before use. */
+    void invalidate() {
+        valid = false;
+    }
+
+    /** Releases the memory used by the image. */
+    void clear() {
+        image = null;
+        valid = false;
+    }
+
+    /**
+     * Draws the POIs, drawing them into the image first if needed.
+     *
+     * @param gfx       The {@link Graphics2D} to draw the POIs to.
+     * @param transform The transform from map-space to component-space.
+     * @param width     The width of the visible area of the map.
+     * @param height    The height of the visible area of the map.
+     * @param renderer  A function that draws the POIs inside an area of the
+     *                  component.
+     */
+    void draw(Graphics2D gfx, AffineTransform transform, int width, int height, Renderer renderer) {
+        var config = gfx.getDeviceConfiguration();
+        var currentDeviceScale = config.getDefaultTransform().getScaleX();
+
+        // Work out where the image is now, since the map may have been panned.
+        var offsetX = (int) Math.round(transform.getTranslateX() - translateX);
+        var offsetY = (int) Math.round(transform.getTranslateY() - translateY);
+        var covered = new Rectangle(area);
+        covered.translate(offsetX, offsetY);
+
+        var image = this.image;
+        if (image == null
+                || !valid
+                || transform.getScaleX() != scale
+                || currentDeviceScale != deviceScale
+                || !covered.contains(0, 0, width, height)) {
+            area.setBounds(-MARGIN, -MARGIN, width + MARGIN * 2, height + MARGIN * 2);
+            translateX = transform.getTranslateX();
+            translateY = transform.getTranslateY();
+            scale = transform.getScaleX();
+            deviceScale = currentDeviceScale;
+            offsetX = 0;
+            offsetY = 0;
+
+            var imageWidth = (int) Math.ceil(area.width * deviceScale);
+            var imageHeight = (int) Math.ceil(area.height * deviceScale);
+            if (image == null || image.getWidth() != imageWidth || image.getHeight() != imageHeight) {
+                image = config.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT);
+                this.image = image;
+            }
+
+            var imageGfx = image.createGraphics();
+            imageGfx.setComposite(AlphaComposite.Clear);
+            imageGfx.fillRect(0, 0, imageWidth, imageHeight);
+            imageGfx.setComposite(AlphaComposite.SrcOver);
+            imageGfx.setRenderingHints(gfx.getRenderingHints());
+            imageGfx.setFont(gfx.getFont());
+            imageGfx.scale(deviceScale, deviceScale);
+            imageGfx.translate(-area.x, -area.y);
+            renderer.render(imageGfx, area);
+            imageGfx.dispose();
+            valid = true;
+        }
+
+        var imageGfx = (Graphics2D) gfx.create();
+        imageGfx.translate(area.x + offsetX, area.y + offsetY);
+        imageGfx.scale(1.0 / deviceScale, 1.0 / deviceScale);
+        imageGfx.drawImage(image, 0, 0, null);
+        imageGfx.dispose();
+    }
+
+    /** A function that draws POIs. */
+    @FunctionalInterface
+    interface Renderer {
+        /**
+         * Draws the POIs inside an area.
+         *
+         * @param gfx  The {@link Graphics2D} to draw the POIs to, in
+         *             component-space.
+         * @param area The area of the component to draw.
+         */
+        void render(Graphics2D gfx, Rectangle area);
+    }
+}
@@ -0,0 +1,131 @@
+package cs2212.westernmaps.maps;
+
+import cs2212.westernmaps.core.POI;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A list of POIs that can quickly find the POIs inside a rectangle.
+ *
+ * <p>A uniform grid is laid over the locations of the POIs, in map-space, and
+ * each cell of the grid lists the POIs inside it. Finding the POIs near the
+ * mouse only has to look at the few cells around it, so hovering over a floor
+ * takes the same time no matter how many POIs it has.</p>
+ *
+ * <p>Instances of this class are immutable, as long as the list of POIs they
+ * were built from isn't modified.</p>
+ */
+final class PoiSpatialIndex {
+    // The smallest width and height of each grid cell, in map-space.
+    private static final int MIN_CELL_SIZE = 64;
+    // The largest number of columns and rows, which limits the size of the
+    // grid if some POIs are very far away from the others.
+    private static final int MAX_GRID_SIZE = 1024;
+
+    private final List<POI> pois;
+
+    // The grid of cells. The indices of the POIs in cell i are stored in
+    // cellPois, from index cellStarts[i] to cellStarts[i + 1], in order.
+    private final int gridX;
+    private final int gridY;
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts;
+    private final int[] cellPois;
+
+    /**
+     * Builds an index of a list of POIs.
+     *
+     * @param pois The POIs to index.
+     */
+    PoiSpatialIndex(List<POI> pois) {
+        this.pois = pois;
+
+        var minX = Integer.MAX_VALUE;
+        var minY = Integer.MAX_VALUE;
+        var maxX = Integer.MIN_VALUE;
+        var maxY = Integer.MIN_VALUE;
+        for (var poi : pois) {
+            minX = Math.min(minX, poi.x());
+            minY = Math.min(minY, poi.y());
+            maxX = Math.max(maxX, poi.x());
+            maxY = Math.max(maxY, poi.y());
+        }
+        if (pois.isEmpty()) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        var extent = Math.max((long) maxX - minX, (long) maxY - minY) + 1;
+        gridX = minX;
+        gridY = minY;
+        cellSize = (int) Math.max(MIN_CELL_SIZE, (extent + MAX_GRID_SIZE - 1) / MAX_GRID_SIZE);
+        columns = (int) (((long) maxX - minX) / cellSize) + 1;
+        rows = (int) (((long) maxY - minY) / cellSize) + 1;
+
+        // Count the POIs in each cell, then fill in the cells.
+        cellStarts = new int[columns * rows + 1];
+        for (var poi : pois) {
+            cellStarts[getCell(poi) + 1]++;
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        cellPois = new int[pois.size()];
+        var cellFill = Arrays.copyOf(cellStarts, columns * rows);
+        for (int i = 0; i < pois.size(); i++) {
+            cellPois[cellFill[getCell(pois.get(i))]++] = i;
+        }
+    }
+
+    /**
+     * Gets the POIs whose locations are inside an area.
+     *
+     * @param area The area to search, in map-space. POIs on its edges are
+     *             included.
+     * @return     The POIs in the area, in the order they were indexed.
+     */
+    List<POI> getPoisInArea(Rectangle2D area) {
+        var firstColumn = (int) Math.max(0, Math.floor((area.getMinX() - gridX) / cellSize));
+        var lastColumn = (int) Math.min(columns - 1, Math.floor((area.getMaxX() - gridX) / cellSize));
+        var firstRow = (int) Math.max(0, Math.floor((area.getMinY() - gridY) / cellSize));
+        var lastRow = (int) Math.min(rows - 1, Math.floor((area.getMaxY() - gridY) / cellSize));
+
+        // Collect the indices of the POIs first, so they can be sorted. A POI
+        // is only ever in one cell, so there are no duplicates.
+        var found = new int[16];
+        var foundCount = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                var cell = row * columns + column;
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    var poi = pois.get(cellPois[i]);
+                    if (poi.x() >= area.getMinX()
+                            && poi.x() <= area.getMaxX()
+                            && poi.y() >= area.getMinY()
+                            && poi.y() <= area.getMaxY()) {
+                        if (foundCount == found.length) {
+                            found = Arrays.copyOf(found, foundCount * 2);
+                        }
+                        found[foundCount++] = cellPois[i];
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(found, 0, foundCount);
+        var result = new ArrayList<POI>(foundCount);
+        for (int i = 0; i < foundCount; i++) {
+            result.add(pois.get(found[i]));
+        }
+        return result;
+    }
+
+    private int getCell(POI poi) {
+        var column = (int) (((long) poi.x() - gridX) / cellSize);
+        var row = (int) (((long) poi.y() - gridY) / cellSize);
+        return row * columns + column;
+    }
+}
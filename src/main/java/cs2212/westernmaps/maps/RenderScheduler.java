@@ -0,0 +1,195 @@
+package cs2212.westernmaps.maps;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the background work of every map view on a small, fixed set of threads.
+ *
+ * <p>Work is submitted as tasks, each belonging to an owner (such as a
+ * {@link MapRenderCache}) and having a {@link Priority}. An owner has at most
+ * one waiting task of each priority: submitting another replaces the one that
+ * is waiting, so bursts of requests, such as while zooming quickly, collapse
+ * into running only the latest request. Tasks of the same owner and priority
+ * never run at the same time. Waiting tasks with a higher priority always run
+ * first, so the visible parts of a map are rendered before anything else.</p>
+ *
+ * <p>Running tasks are never interrupted. Tasks that take a long time should
+ * check whether their work is still needed as they go.</p>
+ */
+public final class RenderScheduler {
+    private static final int THREAD_COUNT = 3;
+    private static final long SHUTDOWN_TIMEOUT_MS = 1000;
+
+    private static final RenderScheduler SHARED = new RenderScheduler(THREAD_COUNT);
+
+    // Guarded by this object's monitor. Iteration order is submission order,
+    // which is used to run tasks of the same priority first come, first served.
+    private final Map<TaskKey, Runnable> waitingTasks = new LinkedHashMap<>();
+    private final Set<TaskKey> runningTasks = new HashSet<>();
+    private boolean shutDown = false;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * Creates a scheduler and starts its threads.
+     *
+     * @param threadCount The number of tasks that can run at the same time.
+     */
+    RenderScheduler(int threadCount) {
+        for (int i = 0; i < threadCount; i++) {
+            var thread = new Thread(this::runTasks);
+            // Make sure the thread will stop when all other threads exit.
+            thread.setDaemon(true);
+            thread.setName("Map Render Scheduler Thread " + i);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Gets the scheduler that is shared by every map view in the application.
+     *
+     * @return The shared scheduler.
+     */
+    public static RenderScheduler getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Submits a task, replacing the task of the same owner and priority that
+     * is waiting to run, if there is one.
+     *
+     * <p>Tasks submitted after the scheduler has shut down are ignored.</p>
+     *
+     * @param owner    The object the task belongs to.
+     * @param priority The priority of the task.
+     * @param task     The task to run.
+     */
+    synchronized void submit(Object owner, Priority priority, Runnable task) {
+        if (shutDown) {
+            return;
+        }
+        // Remove the old task first, so the new one goes to the back of the
+        // queue.
+        var key = new TaskKey(owner, priority);
+        waitingTasks.remove(key);
+        waitingTasks.put(key, task);
+        notifyAll();
+    }
+
+    /**
+     * Removes every task of an owner that is waiting to run.
+     *
+     * @param owner The object whose tasks to remove.
+     */
+    synchronized void cancel(Object owner) {
+        waitingTasks.keySet().removeIf(key -> key.owner() == owner);
+    }
+
+    /**
+     * Stops the scheduler, and waits a short time for running tasks to finish.
+     *
+     * <p>Tasks that are waiting to run are discarded.</p>
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutDown = true;
+            waitingTasks.clear();
+            notifyAll();
+        }
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        for (var thread : threads) {
+            try {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            TaskKey key;
+            Runnable task;
+            synchronized (this) {
+                var nextKey = findNextTask();
+                while (nextKey == null) {
+                    if (shutDown) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    nextKey = findNextTask();
+                }
+                key = nextKey;
+                task = waitingTasks.remove(key);
+                runningTasks.add(key);
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    runningTasks.remove(key);
+                    // Another task of the same owner may be able to run now.
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    // Finds the waiting task with the highest priority that can run now.
+    private @Nullable TaskKey findNextTask() {
+        TaskKey next = null;
+        for (var key : waitingTasks.keySet()) {
+            if (!runningTasks.contains(key) && (next == null || key.priority().compareTo(next.priority()) < 0)) {
+                next = key;
+            }
+        }
+        return next;
+    }
+
+    /** The priority of a task, from highest to lowest. */
+    enum Priority {
+        /**
+         * Map sizes and images read from the disk cache, which are needed to
+         * show anything and are quicker to get than any render.
+         */
+        DISK_READS,
+        /** Low-quality previews, which are shown before anything else. */
+        PREVIEW,
+        /** Tiles that are currently visible. */
+        VISIBLE_TILES,
+        /** Whole-map images, which are shown while zooming. */
+        PYRAMID,
+        /** Maps that aren't visible yet, but might be shown soon. */
+        PREFETCH,
+    }
+
+    // Identifies the tasks that replace each other. Owners are compared by
+    // identity, since that's how they are distinguished by the callers.
+    private record TaskKey(Object owner, Priority priority) {
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof TaskKey key && owner == key.owner && priority == key.priority;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner) * 31 + priority.hashCode();
+        }
+    }
+}
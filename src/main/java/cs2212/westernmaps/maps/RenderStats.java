@@ -0,0 +1,363 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.AWTEvent;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import javax.swing.KeyStroke;
+
+/**
+ * Measures how long the map viewer takes to paint and render, so that cache
+ * budgets can be tuned on real hardware.
+ *
+ * <p>Measuring is disabled by default, and is enabled by setting the
+ * {@code cs2212.westernmaps.enableRenderStats} system property to
+ * {@code true}. When it is disabled, nothing is recorded.</p>
+ *
+ * <p>Four measurements are kept, each over the last {@value #WINDOW_SIZE}
+ * samples:</p>
+ *
+ * <ul>
+ *     <li>The time taken by each paint of a map viewer.</li>
+ *     <li>The percentage of the tiles drawn by each paint that were found in
+ *     the {@link MapTileCache}.</li>
+ *     <li>The time from requesting a tile, pyramid level or preview to it
+ *     being rendered in the background.</li>
+ *     <li>The number of frames that each paint dropped, which is the number
+ *     of whole frames at 60 frames per second that it took.</li>
+ * </ul>
+ *
+ * <p>The measurements can be shown on top of the map with an
+ * {@linkplain #installOverlayToggle(String) overlay}, and saved to a CSV file
+ * with {@link #writeCsv(Path)}.</p>
+ *
+ * <p>Instances of this class can be used concurrently by multiple threads.</p>
+ */
+public final class RenderStats {
+    /** The number of recent samples that each measurement keeps. */
+    static final int WINDOW_SIZE = 1000;
+
+    private static final boolean ENABLED = Boolean.getBoolean("cs2212.westernmaps.enableRenderStats");
+
+    // The time available to draw each frame at 60 frames per second.
+    private static final double FRAME_MILLIS = 1000.0 / 60.0;
+
+    // The upper bounds of the histogram buckets of each measurement. Samples
+    // above the last bound go in a final, unbounded bucket.
+    private static final double[] MILLIS_BUCKETS = {1, 2, 4, 8, 16, 33, 66, 133, 266, 533, 1066, 2133};
+    private static final double[] PERCENT_BUCKETS = {10, 20, 30, 40, 50, 60, 70, 80, 90, 99, 100};
+    private static final double[] FRAME_BUCKETS = {0, 1, 2, 4, 8, 16, 32};
+
+    // This must come after the buckets, which are used to create it.
+    private static final RenderStats SHARED = new RenderStats();
+
+    // The look of the overlay.
+    private static final Color OVERLAY_BACKGROUND_COLOR = new Color(0x00, 0x00, 0x00, 0xBF);
+    private static final Color OVERLAY_FOREGROUND_COLOR = Color.WHITE;
+    private static final Color OVERLAY_BAR_COLOR = new Color(0x4F, 0xC3, 0xF7);
+    private static final Color OVERLAY_SLOW_BAR_COLOR = new Color(0xFF, 0x8A, 0x65);
+    private static final int OVERLAY_PADDING = 8;
+    private static final int OVERLAY_LINE_HEIGHT = 15;
+    private static final int OVERLAY_BAR_WIDTH = 14;
+    private static final int OVERLAY_BAR_HEIGHT = 40;
+
+    private final Measurement paintMillis = new Measurement("paint_ms", MILLIS_BUCKETS);
+    private final Measurement tileHitPercent = new Measurement("tile_hit_percent", PERCENT_BUCKETS);
+    private final Measurement renderLatencyMillis = new Measurement("render_latency_ms", MILLIS_BUCKETS);
+    private final Measurement droppedFrames = new Measurement("dropped_frames", FRAME_BUCKETS);
+
+    private volatile boolean overlayVisible = false;
+
+    private RenderStats() {}
+
+    /**
+     * Checks whether render statistics are being recorded.
+     *
+     * @return Whether the {@code cs2212.westernmaps.enableRenderStats} system
+     *         property was set to {@code true} when the application started.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Gets the statistics that are shared by every map view in the
+     * application.
+     *
+     * @return The shared statistics.
+     */
+    public static RenderStats getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Lets a key combination show and hide the overlay in every window.
+     *
+     * @param keyStroke The key combination, in the format accepted by
+     *                  {@link KeyStroke#getKeyStroke(String)}, such as
+     *                  {@code "ctrl shift alt R"}.
+     */
+    public static void installOverlayToggle(String keyStroke) {
+        var toggleKey = Objects.requireNonNull(KeyStroke.getKeyStroke(keyStroke), "Invalid key stroke");
+        Toolkit.getDefaultToolkit()
+                .addAWTEventListener(
+                        event -> {
+                            var keyEvent = (KeyEvent) event;
+                            if (keyEvent.getID() == KeyEvent.KEY_PRESSED
+                                    && KeyStroke.getKeyStrokeForEvent(keyEvent).equals(toggleKey)) {
+                                SHARED.overlayVisible = !SHARED.overlayVisible;
+                                for (var window : Window.getWindows()) {
+                                    window.repaint();
+                                }
+                                keyEvent.consume();
+                            }
+                        },
+                        AWTEvent.KEY_EVENT_MASK);
+    }
+
+    /**
+     * Records a paint of a map viewer.
+     *
+     * @param nanos      The time taken by the paint, in nanoseconds.
+     * @param tileHits   The number of tiles that were drawn from the cache.
+     * @param tileMisses The number of tiles that weren't cached.
+     */
+    void recordPaint(long nanos, long tileHits, long tileMisses) {
+        var millis = nanos / 1e6;
+        paintMillis.add(millis);
+        droppedFrames.add(Math.floor(millis / FRAME_MILLIS));
+        if (tileHits + tileMisses > 0) {
+            tileHitPercent.add(100.0 * tileHits / (tileHits + tileMisses));
+        }
+    }
+
+    /**
+     * Records how long it took to render something in the background.
+     *
+     * @param nanos The time from the render being requested to it finishing,
+     *              in nanoseconds.
+     */
+    void recordRenderLatency(long nanos) {
+        renderLatencyMillis.add(nanos / 1e6);
+    }
+
+    /**
+     * Checks whether the overlay should be drawn.
+     *
+     * @return Whether the overlay is visible.
+     */
+    boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    /**
+     * Draws the overlay, which summarizes each measurement and shows the
+     * histogram of paint times.
+     *
+     * @param gfx    The {@link Graphics2D} to draw the overlay to.
+     * @param bounds The area to draw the overlay in. The overlay is drawn in
+     *               its bottom-left corner.
+     */
+    void drawOverlay(Graphics2D gfx, Rectangle bounds) {
+        var paint = paintMillis.summarize();
+        var dropped = droppedFrames.summarize();
+        var lines = List.of(
+                String.format(Locale.ROOT, "paint: %s", paint.describe("ms")),
+                String.format(Locale.ROOT, "tile hits: %s", tileHitPercent.summarize().describe("%")),
+                String.format(Locale.ROOT, "render latency: %s", renderLatencyMillis.summarize().describe("ms")),
+                String.format(Locale.ROOT, "dropped frames: %.0f in %d paints", dropped.sum(), dropped.count()),
+                getCacheDescription());
+
+        var gfx2 = (Graphics2D) gfx.create();
+        gfx2.setFont(gfx2.getFont().deriveFont(Font.PLAIN, 11.0f));
+        var metrics = gfx2.getFontMetrics();
+        var textWidth = 0;
+        for (var line : lines) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(line));
+        }
+        var barsWidth = paint.bucketCounts().length * OVERLAY_BAR_WIDTH;
+        var width = Math.max(textWidth, barsWidth) + OVERLAY_PADDING * 2;
+        var height = lines.size() * OVERLAY_LINE_HEIGHT + OVERLAY_BAR_HEIGHT + OVERLAY_PADDING * 3;
+        var x = bounds.x + OVERLAY_PADDING;
+        var y = bounds.y + bounds.height - height - OVERLAY_PADDING;
+
+        gfx2.setPaint(OVERLAY_BACKGROUND_COLOR);
+        gfx2.fillRoundRect(x, y, width, height, 6, 6);
+        gfx2.setPaint(OVERLAY_FOREGROUND_COLOR);
+        for (int i = 0; i < lines.size(); i++) {
+            gfx2.drawString(lines.get(i), x + OVERLAY_PADDING, y + OVERLAY_PADDING + (i + 1) * OVERLAY_LINE_HEIGHT - 3);
+        }
+
+        // Draw the paint time histogram, with the buckets that take longer
+        // than a frame in a different color.
+        var counts = paint.bucketCounts();
+        var maxCount = Math.max(1, Arrays.stream(counts).max().orElse(0));
+        var barsBottom = y + height - OVERLAY_PADDING;
+        for (int i = 0; i < counts.length; i++) {
+            var barHeight = (int) Math.ceil((double) counts[i] * OVERLAY_BAR_HEIGHT / maxCount);
+            var slow = i > 0 && MILLIS_BUCKETS[i - 1] >= FRAME_MILLIS;
+            gfx2.setPaint(slow ? OVERLAY_SLOW_BAR_COLOR : OVERLAY_BAR_COLOR);
+            gfx2.fillRect(
+                    x + OVERLAY_PADDING + i * OVERLAY_BAR_WIDTH,
+                    barsBottom - barHeight,
+                    OVERLAY_BAR_WIDTH - 2,
+                    barHeight);
+        }
+        gfx2.dispose();
+    }
+
+    /**
+     * Writes the statistics and histogram buckets of every measurement to a
+     * CSV file, replacing the file if it exists.
+     *
+     * <p>Each row has three columns: the name of a measurement, the name of a
+     * statistic, and its value. Histogram buckets are named after their upper
+     * bound, such as {@code le_16}, except for the last bucket, which is
+     * named {@code gt_} followed by the bound before it.</p>
+     *
+     * @param path The path of the file to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeCsv(Path path) throws IOException {
+        var rows = new ArrayList<String>();
+        rows.add("measurement,statistic,value");
+        for (var measurement : List.of(paintMillis, tileHitPercent, renderLatencyMillis, droppedFrames)) {
+            var summary = measurement.summarize();
+            var name = measurement.name;
+            rows.add(name + ",count," + summary.count());
+            rows.add(name + ",sum," + formatValue(summary.sum()));
+            rows.add(name + ",mean," + formatValue(summary.mean()));
+            rows.add(name + ",p50," + formatValue(summary.p50()));
+            rows.add(name + ",p95," + formatValue(summary.p95()));
+            rows.add(name + ",p99," + formatValue(summary.p99()));
+            rows.add(name + ",max," + formatValue(summary.max()));
+            var bounds = measurement.bucketBounds;
+            var counts = summary.bucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                var bucket = i < bounds.length ? "le_" + formatValue(bounds[i]) : "gt_" + formatValue(bounds[i - 1]);
+                rows.add(name + "," + bucket + "," + counts[i]);
+            }
+        }
+
+        var cache = MapTileCache.getShared().getStatistics();
+        rows.add("tile_cache,hits," + cache.hits());
+        rows.add("tile_cache,misses," + cache.misses());
+        rows.add("tile_cache,evictions," + cache.evictions());
+        rows.add("tile_cache,images," + cache.imageCount());
+        rows.add("tile_cache,size_bytes," + cache.sizeBytes());
+        rows.add("tile_cache,budget_bytes," + cache.budgetBytes());
+
+        var parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(path, rows);
+    }
+
+    // Describes how full the shared tile cache is.
+    private static String getCacheDescription() {
+        var cache = MapTileCache.getShared().getStatistics();
+        return String.format(
+                Locale.ROOT,
+                "tile cache: %d images, %.1f / %.0f MB, %d evicted",
+                cache.imageCount(),
+                cache.sizeBytes() / (1024.0 * 1024.0),
+                cache.budgetBytes() / (1024.0 * 1024.0),
+                cache.evictions());
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // The most recent samples of one measurement.
+    private static final class Measurement {
+        private final String name;
+        private final double[] bucketBounds;
+
+        // A ring buffer of samples. Guarded by this object's monitor.
+        private final double[] samples = new double[WINDOW_SIZE];
+        private int sampleCount = 0;
+        private int nextSample = 0;
+
+        private Measurement(String name, double[] bucketBounds) {
+            this.name = name;
+            this.bucketBounds = bucketBounds;
+        }
+
+        private void add(double sample) {
+            if (!ENABLED) {
+                return;
+            }
+            synchronized (this) {
+                samples[nextSample] = sample;
+                nextSample = (nextSample + 1) % samples.length;
+                sampleCount = Math.min(sampleCount + 1, samples.length);
+            }
+        }
+
+        private Summary summarize() {
+            double[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(samples, sampleCount);
+            }
+            Arrays.sort(sorted);
+
+            var sum = 0.0;
+            var bucketCounts = new int[bucketBounds.length + 1];
+            var bucket = 0;
+            for (var sample : sorted) {
+                sum += sample;
+                while (bucket < bucketBounds.length && sample > bucketBounds[bucket]) {
+                    bucket++;
+                }
+                bucketCounts[bucket]++;
+            }
+            return new Summary(
+                    sorted.length,
+                    sum,
+                    sorted.length > 0 ? sum / sorted.length : 0.0,
+                    getPercentile(sorted, 0.50),
+                    getPercentile(sorted, 0.95),
+                    getPercentile(sorted, 0.99),
+                    sorted.length > 0 ? sorted[sorted.length - 1] : 0.0,
+                    bucketCounts);
+        }
+
+        // Gets a percentile of sorted samples, using the nearest rank.
+        private static double getPercentile(double[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            var rank = (int) Math.ceil(percentile * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+    }
+
+    // A summary of the recent samples of a measurement.
+    private record Summary(
+            int count, double sum, double mean, double p50, double p95, double p99, double max, int[] bucketCounts) {
+        private String describe(String unit) {
+            if (count == 0) {
+                return "no samples";
+            }
+            return String.format(
+                    Locale.ROOT, "p50 %.1f%s, p95 %.1f%s, max %.1f%s (%d)", p50, unit, p95, unit, max, unit, count);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.awt.image.VolatileImage;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps copies of rendered map images in the format of the screen.
+ *
+ * <p>Map images are stored as grayscale {@link BufferedImage}s to save
+ * memory, but drawing one of those converts every pixel to the screen's
+ * format on each repaint. This class copies each image into a
+ * {@link VolatileImage} the first time it is drawn, which lives in video
+ * memory when the graphics pipeline is accelerated, so later repaints, such
+ * as while panning, are a plain copy on the graphics card. If acceleration
+ * isn't available, a {@link BufferedImage} in the screen's format is used
+ * instead, which at least avoids converting the pixels.</p>
+ *
+ * <p>The contents of a {@link VolatileImage} can be lost at any time, for
+ * example when the display mode changes. Lost images are copied again from
+ * the original image before being drawn. Images that are only drawn to
+ * something other than the screen, such as when printing, are always drawn
+ * directly.</p>
+ *
+ * <p>The copies take up to four bytes per pixel, so only the most recently
+ * drawn images are kept, up to a fixed number of pixels. This class must only
+ * be used from the event dispatch thread.</p>
+ */
+final class ScreenImageCache {
+    // The total number of pixels in all copies, which is about 64 MB.
+    private static final long MAX_PIXELS = 16L * 1024 * 1024;
+    // The number of times drawing an image is attempted before falling back
+    // to the original image, in case its contents keep getting lost.
+    private static final int MAX_ATTEMPTS = 3;
+
+    // The copies, from least to most recently drawn. Images are compared by
+    // identity, since an image with the same contents is never rendered twice.
+    private final Map<BufferedImage, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalPixels = 0;
+
+    // Whether each display supports accelerated images, which is only
+    // checked once so unaccelerated displays don't keep trying.
+    private final Map<GraphicsConfiguration, Boolean> accelerated = new IdentityHashMap<>();
+
+    /**
+     * Draws an image using its copy in the screen's format, creating the copy
+     * if needed.
+     *
+     * @param gfx      The {@link Graphics2D} to draw the image to.
+     * @param image    The original image to draw.
+     * @param x        The position to draw the image at on the x-axis.
+     * @param y        The position to draw the image at on the y-axis.
+     * @param observer The object to notify if the original image is drawn
+     *                 and isn't loaded yet, or {@code null}.
+     */
+    void draw(Graphics2D gfx, BufferedImage image, int x, int y, @Nullable ImageObserver observer) {
+        var config = gfx.getDeviceConfiguration();
+        var pixels = (long) image.getWidth() * image.getHeight();
+        if (config.getDevice().getType() != GraphicsDevice.TYPE_RASTER_SCREEN || pixels > MAX_PIXELS / 2) {
+            gfx.drawImage(image, x, y, observer);
+            return;
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            var entry = entries.get(image);
+            if (entry == null || entry.config != config) {
+                entry = createEntry(image, config);
+                if (entry == null) {
+                    break;
+                }
+            }
+            if (!entry.restore(image)) {
+                // The copy can't be used on this display anymore.
+                remove(image);
+                continue;
+            }
+
+            gfx.drawImage(entry.copy, x, y, null);
+            if (!entry.contentsLost()) {
+                return;
+            }
+        }
+        gfx.drawImage(image, x, y, observer);
+    }
+
+    /** Removes every copy, releasing the memory they use. */
+    void clear() {
+        entries.values().forEach(Entry::flush);
+        entries.clear();
+        totalPixels = 0;
+    }
+
+    // Creates a copy of an image for a display, evicting the least recently
+    // drawn copies to make room. Returns null if no copy can be created.
+    private @Nullable Entry createEntry(BufferedImage image, GraphicsConfiguration config) {
+        remove(image);
+        var pixels = (long) image.getWidth() * image.getHeight();
+        var iterator = entries.entrySet().iterator();
+        while (totalPixels + pixels > MAX_PIXELS && iterator.hasNext()) {
+            var evicted = iterator.next().getValue();
+            iterator.remove();
+            evicted.flush();
+            totalPixels -= evicted.pixels;
+        }
+
+        Image copy = null;
+        if (accelerated.getOrDefault(config, true)) {
+            try {
+                var volatileImage =
+                        config.createCompatibleVolatileImage(image.getWidth(), image.getHeight(), Transparency.OPAQUE);
+                if (volatileImage.getCapabilities().isAccelerated()) {
+                    copy = volatileImage;
+                } else {
+                    volatileImage.flush();
+                }
+            } catch (RuntimeException ex) {
+                // Fall back to a BufferedImage below.
+            }
+            accelerated.put(config, copy != null);
+        }
+        if (copy == null) {
+            copy = config.createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.OPAQUE);
+        }
+        if (copy == null) {
+            return null;
+        }
+
+        var entry = new Entry(config, copy, pixels);
+        entries.put(image, entry);
+        totalPixels += pixels;
+        return entry;
+    }
+
+    private void remove(BufferedImage image) {
+        var entry = entries.remove(image);
+        if (entry != null) {
+            entry.flush();
+            totalPixels -= entry.pixels;
+        }
+    }
+
+    // A copy of an image in the format of a display.
+    private static final class Entry {
+        private final GraphicsConfiguration config;
+        private final Image copy;
+        private final long pixels;
+        // Whether the original image has been copied into the copy yet.
+        private boolean copied = false;
+
+        Entry(GraphicsConfiguration config, Image copy, long pixels) {
+            this.config = config;
+            this.copy = copy;
+            this.pixels = pixels;
+        }
+
+        // Makes sure the copy has the contents of the original image. Returns
+        // false if the copy can no longer be used on its display.
+        boolean restore(BufferedImage image) {
+            if (copy instanceof VolatileImage volatileImage) {
+                var status = volatileImage.validate(config);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    return false;
+                }
+                if (status == VolatileImage.IMAGE_RESTORED) {
+                    copied = false;
+                }
+            }
+            if (!copied) {
+                var gfx = (Graphics2D) copy.getGraphics();
+                gfx.drawImage(image, 0, 0, null);
+                gfx.dispose();
+                copied = true;
+            }
+            return true;
+        }
+
+        boolean contentsLost() {
+            if (copy instanceof VolatileImage volatileImage && volatileImage.contentsLost()) {
+                copied = false;
+                return true;
+            }
+            return false;
+        }
+
+        void flush() {
+            copy.flush();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.geom.Path2D;
+import java.io.IOException;
+
+/**
+ * Parses the path data of SVG {@code <path>} elements into {@link Path2D}
+ * shapes.
+ *
+ * <p>Every command except for elliptical arcs is supported, in both their
+ * absolute and relative forms. None of the map SVGs use arcs, since Inkscape
+ * converts them to curves when exporting floor plans.</p>
+ */
+final class SvgPathParser {
+    private final String data;
+    private int position = 0;
+
+    // The current point, and the start of the current subpath.
+    private float x = 0;
+    private float y = 0;
+    private float startX = 0;
+    private float startY = 0;
+
+    // The last control point of the previous command, which is reflected by
+    // the smooth curve commands.
+    private float controlX = 0;
+    private float controlY = 0;
+
+    private SvgPathParser(String data) {
+        this.data = data;
+    }
+
+    /**
+     * Parses SVG path data.
+     *
+     * @param data The value of the {@code d} attribute of a path.
+     * @return     The parsed path, using the non-zero winding rule.
+     * @throws IOException If the path data is malformed or uses elliptical
+     *                     arcs.
+     */
+    static Path2D.Float parse(String data) throws IOException {
+        // Most of the map paths have a command every eight characters or so.
+        var path = new Path2D.Float(Path2D.WIND_NON_ZERO, data.length() / 8 + 1);
+        new SvgPathParser(data).parseInto(path);
+        path.trimToSize();
+        return path;
+    }
+
+    private void parseInto(Path2D.Float path) throws IOException {
+        char command = 0;
+        char previousCommand = 0;
+
+        skipSeparators();
+        while (position < data.length()) {
+            var next = data.charAt(position);
+            if (Character.isLetter(next)) {
+                command = next;
+                position++;
+            } else if (command == 0 || command == 'z' || command == 'Z') {
+                throw error("Expected a command");
+            }
+
+            // Coordinates of relative commands are offsets from the current
+            // point.
+            var relative = Character.isLowerCase(command);
+            var originX = relative ? x : 0;
+            var originY = relative ? y : 0;
+            var lowerCommand = Character.toLowerCase(command);
+            switch (lowerCommand) {
+                case 'm' -> {
+                    x = originX + parseNumber();
+                    y = originY + parseNumber();
+                    path.moveTo(x, y);
+                    startX = x;
+                    startY = y;
+                    // Any coordinates after the first pair are lines.
+                    command = relative ? 'l' : 'L';
+                }
+                case 'l' -> {
+                    x = originX + parseNumber();
+                    y = originY + parseNumber();
+                    path.lineTo(x, y);
+                }
+                case 'h' -> {
+                    x = originX + parseNumber();
+                    path.lineTo(x, y);
+                }
+                case 'v' -> {
+                    y = originY + parseNumber();
+                    path.lineTo(x, y);
+                }
+                case 'c', 's' -> {
+                    float x1;
+                    float y1;
+                    if (lowerCommand == 'c') {
+                        x1 = originX + parseNumber();
+                        y1 = originY + parseNumber();
+                    } else if (previousCommand == 'c' || previousCommand == 's') {
+                        x1 = 2 * x - controlX;
+                        y1 = 2 * y - controlY;
+                    } else {
+                        x1 = x;
+                        y1 = y;
+                    }
+                    controlX = originX + parseNumber();
+                    controlY = originY + parseNumber();
+                    x = originX + parseNumber();
+                    y = originY + parseNumber();
+                    path.curveTo(x1, y1, controlX, controlY, x, y);
+                }
+                case 'q', 't' -> {
+                    if (lowerCommand == 'q') {
+                        controlX = originX + parseNumber();
+                        controlY = originY + parseNumber();
+                    } else if (previousCommand == 'q' || previousCommand == 't') {
+                        controlX = 2 * x - controlX;
+                        controlY = 2 * y - controlY;
+                    } else {
+                        controlX = x;
+                        controlY = y;
+                    }
+                    x = originX + parseNumber();
+                    y = originY + parseNumber();
+                    path.quadTo(controlX, controlY, x, y);
+                }
+                case 'z' -> {
+                    path.closePath();
+                    x = startX;
+                    y = startY;
+                }
+                default -> throw error("Unsupported command '" + command + "'");
+            }
+            previousCommand = lowerCommand;
+            skipSeparators();
+        }
+    }
+
+    private float parseNumber() throws IOException {
+        skipSeparators();
+        var start = position;
+        skipIf('+', '-');
+        var digits = skipDigits();
+        if (skipIf('.', '.')) {
+            digits += skipDigits();
+        }
+        if (digits == 0) {
+            throw error("Expected a number");
+        }
+        if (skipIf('e', 'E')) {
+            skipIf('+', '-');
+            if (skipDigits() == 0) {
+                throw error("Expected an exponent");
+            }
+        }
+        return Float.parseFloat(data.substring(start, position));
+    }
+
+    private void skipSeparators() {
+        while (position < data.length()) {
+            var c = data.charAt(position);
+            if (c != ',' && !Character.isWhitespace(c)) {
+                break;
+            }
+            position++;
+        }
+    }
+
+    // Returns the number of digits that were skipped.
+    private int skipDigits() {
+        var start = position;
+        while (position < data.length() && Character.isDigit(data.charAt(position))) {
+            position++;
+        }
+        return position - start;
+    }
+
+    // Skips the next character if it is either of the given characters.
+    private boolean skipIf(char first, char second) {
+        if (position < data.length()) {
+            var c = data.charAt(position);
+            if (c == first || c == second) {
+                position++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at index " + position + " of path data");
+    }
+}
@@ -8,6 +8,8 @@ import cs2212.westernmaps.core.Layer;
 import cs2212.westernmaps.core.POI;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.MouseAdapter;
 import java.util.ArrayList;
@@ -20,16 +22,24 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
 
 /**
  * A panel that displays the metadata of a POI, and allows developers to edit it.
  * <p>The {@link POISummaryPanel} constructor is used to create a new panel that can be toggled on and off. It is used
  * in the {@link cs2212.westernmaps.maps.MapPanel} class.</p>
+ * <p>Typing into the title or description starts an edit session. Every keystroke is still reported to the change
+ * listeners, but while {@link #isEditing()} is true they should be treated as one edit. The session is committed
+ * when typing pauses for {@value #EDIT_COMMIT_DELAY} milliseconds, when the field loses focus, or when anything else
+ * about the POI is changed.</p>
  * @author Christpher Chosang
  */
 public class POISummaryPanel extends JPanel {
     private static final int MAX_COLUMNS = 20;
 
+    /** How long typing has to pause before an edit session is committed, in milliseconds. */
+    public static final int EDIT_COMMIT_DELAY = 1000;
+
     // The POI metadata that is being displayed.
     private @Nullable POI poi;
 
@@ -48,9 +58,15 @@ public class POISummaryPanel extends JPanel {
 
     private boolean currentlyRefreshing = false;
 
-    // Listeners that are called when the POI metadata is changed ot deleted.
+    // The text field of the current edit session, or null if no text is being edited.
+    private @Nullable JTextComponent editingField = null;
+    // Commits the current edit session once typing pauses.
+    private final Timer editCommitTimer = new Timer(EDIT_COMMIT_DELAY, e -> commitEdit());
+
+    // Listeners that are called when the POI metadata is changed ot deleted, or an edit session is committed.
     private final List<BiConsumer<POI, POI>> poiChangeListeners = new ArrayList<>();
     private final List<Consumer<POI>> poiDeleteListeners = new ArrayList<>();
+    private final List<Runnable> editCommitListeners = new ArrayList<>();
 
     /**
      * Summary window of a POI that displays its metadata.
@@ -60,6 +76,14 @@ public class POISummaryPanel extends JPanel {
     public POISummaryPanel(Account loggedInAccount) {
         this.loggedInAccount = loggedInAccount;
 
+        editCommitTimer.setRepeats(false);
+        var commitOnFocusLost = new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                commitEdit();
+            }
+        };
+
         JPanel summaryBox = new JPanel();
         summaryBox.setLayout(new BoxLayout(summaryBox, BoxLayout.PAGE_AXIS));
         summaryBox.add(Box.createRigidArea(new Dimension(0, 10)));
@@ -90,6 +114,7 @@ public class POISummaryPanel extends JPanel {
                     newTitle = doc.getText(0, doc.getLength());
 
                     POI newPoi = poi.withName(newTitle);
+                    continueEdit(titleField);
                     poiChangeListeners.forEach(listener -> listener.accept(poi, newPoi));
 
                     poi = newPoi;
@@ -98,6 +123,7 @@ public class POISummaryPanel extends JPanel {
                 }
             }
         });
+        titleField.addFocusListener(commitOnFocusLost);
 
         //        addToBox(summaryBox, titleField);
 
@@ -118,6 +144,7 @@ public class POISummaryPanel extends JPanel {
                     return;
                 }
 
+                commitEdit();
                 Layer newLayer = (Layer) layerComboBox.getSelectedItem();
                 // Make sure custom POIs are only visible to the account that
                 // created them.
@@ -152,6 +179,7 @@ public class POISummaryPanel extends JPanel {
                 return;
             }
 
+            commitEdit();
             boolean selected = e.getStateChange() == ItemEvent.SELECTED;
             POI newPoi = poi.withFavoriteOfAccount(loggedInAccount, selected);
             poiChangeListeners.forEach(listener -> listener.accept(poi, newPoi));
@@ -191,6 +219,7 @@ public class POISummaryPanel extends JPanel {
                     String newDesc = doc.getText(0, doc.getLength());
 
                     POI newPoi = poi.withDescription(newDesc);
+                    continueEdit(descriptionField);
                     poiChangeListeners.forEach(listener -> listener.accept(poi, newPoi));
 
                     poi = newPoi;
@@ -199,6 +228,7 @@ public class POISummaryPanel extends JPanel {
                 }
             }
         });
+        descriptionField.addFocusListener(commitOnFocusLost);
         JScrollPane descScroll = new JScrollPane(descriptionField);
         addToBox(summaryBox, descScroll);
 
@@ -213,6 +243,7 @@ public class POISummaryPanel extends JPanel {
                     return;
                 }
 
+                commitEdit();
                 int confirmDelete = JOptionPane.showConfirmDialog(
                         (Component) e.getSource(),
                         "Are you sure you want to delete " + poi.name() + "?",
@@ -232,7 +263,10 @@ public class POISummaryPanel extends JPanel {
 
         var closeButton = new JButton(MiscIcons.CLOSE_ICON);
         closeButton.putClientProperty(FlatClientProperties.BUTTON_TYPE, "borderless");
-        closeButton.addActionListener(e -> setVisible(false));
+        closeButton.addActionListener(e -> {
+            commitEdit();
+            setVisible(false);
+        });
 
         setLayout(new GridBagLayout());
         var constraints = new GridBagConstraints();
@@ -272,6 +306,7 @@ public class POISummaryPanel extends JPanel {
      * @param poi The new POI to view/edit.
      */
     public void setCurrentPoi(POI poi) {
+        commitEdit();
         this.poi = poi;
         refreshFields();
     }
@@ -285,6 +320,48 @@ public class POISummaryPanel extends JPanel {
         poiChangeListeners.add(listener);
     }
 
+    /**
+     * Registers an event listener that is called when an edit session is committed, after which changes are no
+     * longer part of the same edit.
+     *
+     * @param listener Event listener, which is called after the last change of the edit session.
+     */
+    public void addEditCommitListener(Runnable listener) {
+        editCommitListeners.add(listener);
+    }
+
+    /**
+     * Checks whether text is being edited, in which case changes are part of an edit session that hasn't been
+     * committed yet.
+     *
+     * @return Whether an edit session is in progress.
+     */
+    public boolean isEditing() {
+        return editingField != null;
+    }
+
+    /**
+     * Commits the current edit session, if there is one.
+     */
+    public void commitEdit() {
+        if (editingField == null) {
+            return;
+        }
+        editingField = null;
+        editCommitTimer.stop();
+        editCommitListeners.forEach(Runnable::run);
+    }
+
+    // Starts or continues an edit session for a text field, before a change to it is reported. Switching to another
+    // field commits the previous session first.
+    private void continueEdit(JTextComponent field) {
+        if (editingField != field) {
+            commitEdit();
+            editingField = field;
+        }
+        editCommitTimer.restart();
+    }
+
     /**
      * Registers an event listener that is called when a POI is deleted.
      *
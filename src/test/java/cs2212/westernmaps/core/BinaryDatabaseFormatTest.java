@@ -0,0 +1,105 @@
+package cs2212.westernmaps.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class BinaryDatabaseFormatTest {
+    private static DatabaseState createSampleDatabase() {
+        var userAccount = new Account("user", "ESIzRA==", false);
+        var developerAccount = new Account("developer", "VWZ3iA==", true);
+        var firstFloor = new Floor("1", "First Floor", Path.of("maps/Example Building/First Floor.svg"));
+        var secondFloor = new Floor("2", "Second Floor", Path.of("maps/Example Building/Second Floor.svg"));
+
+        return new DatabaseState(
+                List.of(userAccount, developerAccount),
+                List.of(new Building("Example Building", List.of(firstFloor, secondFloor))),
+                List.of(
+                        new POI(
+                                "Example Restaurant",
+                                "A restaurant that has been fabricated for this example.",
+                                50,
+                                100,
+                                Set.of(userAccount, developerAccount),
+                                firstFloor,
+                                Layer.EATERIES,
+                                null),
+                        new POI("Caf\u00e9 \u2615", "", -20, 70000, Set.of(), secondFloor, Layer.CUSTOM, userAccount)));
+    }
+
+    private static byte[] save(DatabaseState state, boolean compress) throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+        BinaryDatabaseFormat.save(state, outputStream, compress);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testEmptyDatabase() throws IOException {
+        var bytes = save(DatabaseState.EMPTY, false);
+        Assertions.assertEquals(DatabaseState.EMPTY, BinaryDatabaseFormat.load(bytes));
+    }
+
+    @Test
+    public void testSampleDatabase() throws IOException {
+        var database = createSampleDatabase();
+        var bytes = save(database, false);
+        Assertions.assertTrue(BinaryDatabaseFormat.hasMagic(bytes));
+        Assertions.assertFalse(BinaryDatabaseFormat.isCompressed(bytes));
+        Assertions.assertEquals(database, BinaryDatabaseFormat.load(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testCompressedDatabase() throws IOException {
+        var database = createSampleDatabase();
+        var bytes = save(database, true);
+        Assertions.assertTrue(BinaryDatabaseFormat.isCompressed(bytes));
+        Assertions.assertEquals(database, BinaryDatabaseFormat.load(bytes));
+    }
+
+    @Test
+    public void testSharedReferences() throws IOException {
+        var loaded = BinaryDatabaseFormat.load(save(createSampleDatabase(), false));
+
+        // Accounts and floors should be the same objects everywhere, like
+        // when they are loaded from JSON.
+        var poi = loaded.pois().get(0);
+        Assertions.assertSame(loaded.buildings().get(0).floors().get(0), poi.floor());
+        Assertions.assertTrue(poi.favoriteOf().stream().allMatch(account -> loaded.accounts().stream()
+                .anyMatch(other -> other == account)));
+        Assertions.assertSame(loaded.accounts().get(0), loaded.pois().get(1).onlyVisibleTo());
+    }
+
+    @Test
+    public void testReferencesOutsideDatabase() throws IOException {
+        // POIs can refer to accounts and floors that aren't in the database.
+        var account = new Account("testUser", "testPassword", false);
+        var floor = new Floor("G", "test name", Path.of(""));
+        var database = new DatabaseState(
+                List.of(),
+                List.of(),
+                List.of(new POI("Test", "test", 0, 0, Set.of(), floor, Layer.MISCELLANEOUS, account)));
+        Assertions.assertEquals(database, BinaryDatabaseFormat.load(save(database, false)));
+    }
+
+    @Test
+    public void testDamagedDatabase() throws IOException {
+        for (var compress : List.of(false, true)) {
+            var bytes = save(createSampleDatabase(), compress);
+
+            // Changing any byte of the body should be caught by the checksum.
+            var damaged = bytes.clone();
+            damaged[damaged.length / 2 + 10] ^= 0x10;
+            Assertions.assertThrows(IOException.class, () -> BinaryDatabaseFormat.load(damaged));
+
+            var truncated = Arrays.copyOf(bytes, bytes.length - 1);
+            Assertions.assertThrows(IOException.class, () -> BinaryDatabaseFormat.load(truncated));
+        }
+        Assertions.assertThrows(IOException.class, () -> BinaryDatabaseFormat.load(new byte[] {'{', '}'}));
+    }
+}
@@ -149,4 +149,120 @@ public final class DatabaseStateTest {
         JSONAssert.assertEquals(databaseJson, serialized, JSONCompareMode.STRICT);
         Assertions.assertEquals(database, deserialized);
     }
+
+    @Test
+    public void testSavedFormat() throws IOException {
+        var account = new Account("user", "ESIzRA==", false);
+        var floor = new Floor("1", "First Floor", Path.of("maps/Example Building/First Floor.svg"));
+        var database = new DatabaseState(
+                List.of(account),
+                List.of(new Building("Example Building", List.of(floor))),
+                List.of(new POI("Caf\u00e9", "", -5, 10, Set.of(account), floor, Layer.CUSTOM, account)));
+        var databaseJson =
+                """
+                {
+                  "accounts": [
+                    {
+                      "@id": 1,
+                      "developer": false,
+                      "passwordHash": "ESIzRA==",
+                      "username": "user"
+                    }
+                  ],
+                  "buildings": [
+                    {
+                      "floors": [
+                        {
+                          "@id": 1,
+                          "longName": "First Floor",
+                          "mapPath": "maps/Example Building/First Floor.svg",
+                          "shortName": "1"
+                        }
+                      ],
+                      "name": "Example Building"
+                    }
+                  ],
+                  "pois": [
+                    {
+                      "description": "",
+                      "favoriteOf": [
+                        1
+                      ],
+                      "floor": 1,
+                      "layer": "CUSTOM",
+                      "name": "Caf\u00e9",
+                      "onlyVisibleTo": 1,
+                      "x": -5,
+                      "y": 10
+                    }
+                  ]
+                }
+                """;
+
+        var outputStream = new ByteArrayOutputStream();
+        database.saveToStream(outputStream);
+        var serialized = outputStream.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+
+        // The whole layout is checked, since it's what ends up in the
+        // database file that developers read and diff.
+        Assertions.assertEquals(databaseJson, serialized);
+    }
+
+    @Test
+    public void testReferencesOutsideDatabase() throws IOException {
+        // Accounts and floors that aren't in the database are written in full
+        // the first time they are used, and by ID after that.
+        var account = new Account("testUser", "testPassword", false);
+        var floor = new Floor("G", "test name", Path.of(""));
+        var database = new DatabaseState(
+                List.of(),
+                List.of(),
+                List.of(
+                        new POI("First", "", 0, 0, Set.of(account), floor, Layer.MISCELLANEOUS, account),
+                        new POI("Second", "", 0, 0, Set.of(), floor, Layer.MISCELLANEOUS, null)));
+
+        var outputStream = new ByteArrayOutputStream();
+        database.saveToStream(outputStream);
+        var deserialized = DatabaseState.loadFromStream(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        Assertions.assertEquals(database, deserialized);
+        var first = deserialized.pois().get(0);
+        Assertions.assertSame(first.onlyVisibleTo(), first.favoriteOf().iterator().next());
+        Assertions.assertSame(first.floor(), deserialized.pois().get(1).floor());
+    }
+
+    @Test
+    public void testInvalidDatabase() {
+        var invalidJson = List.of(
+                // An unknown account ID.
+                """
+                {"accounts": [], "buildings": [], "pois": [{"name": "", "description": "", "x": 0, "y": 0,
+                    "favoriteOf": [3], "floor": {"@id": 1, "shortName": "", "longName": "", "mapPath": ""},
+                    "layer": "CUSTOM"}]}
+                """,
+                // An unknown layer.
+                """
+                {"accounts": [], "buildings": [], "pois": [{"name": "", "description": "", "x": 0, "y": 0,
+                    "favoriteOf": [], "floor": {"@id": 1, "shortName": "", "longName": "", "mapPath": ""},
+                    "layer": "NOT_A_LAYER"}]}
+                """,
+                // A missing floor.
+                """
+                {"accounts": [], "buildings": [], "pois": [{"name": "", "description": "", "x": 0, "y": 0,
+                    "favoriteOf": [], "layer": "CUSTOM"}]}
+                """,
+                // An unknown property.
+                """
+                {"accounts": [], "buildings": [], "pois": [], "unknown": []}
+                """,
+                // Truncated data.
+                """
+                {"accounts": [{"@id": 1, "username": "user",
+                """);
+
+        for (var json : invalidJson) {
+            var inputStream = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+            Assertions.assertThrows(IOException.class, () -> DatabaseState.loadFromStream(inputStream));
+        }
+    }
 }
@@ -2,11 +2,22 @@ package cs2212.westernmaps.core;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,11 +38,37 @@ class DatabaseTest {
 
     @AfterEach
     void tearDownTestDatabase() throws IOException {
-        // Delete the temporary directory and database.json.
-        Files.delete(directory.resolve("database.json"));
+        // Delete the temporary directory, database.json and the journal.
+        try (var files = Files.list(directory)) {
+            for (var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
         Files.delete(directory);
     }
 
+    // Writes a database with an account and a building to the temporary
+    // directory, so that changes to its POIs can be journaled.
+    private Database openJournaledDatabase() throws IOException {
+        var account = new Account("testUser", "testPassword", false);
+        var floor = new Floor("G", "Ground floor", Path.of("maps/something.svg"));
+        var building = new Building("Test building", List.of(floor));
+        var poi = new POI("Test", "test", 10, 20, Set.of(), floor, Layer.MISCELLANEOUS, null);
+        var state = new DatabaseState(List.of(account), List.of(building), List.of(poi));
+        try (var outputStream = Files.newOutputStream(directory.resolve("database.json"))) {
+            state.saveToStream(outputStream);
+        }
+        return Database.openDirectory(directory);
+    }
+
+    private POI getFirstPOI(Database database) {
+        return database.getCurrentState().pois().get(0);
+    }
+
+    private static List<POI> replace(List<POI> pois, POI oldPOI, POI newPOI) {
+        return pois.stream().map(poi -> poi == oldPOI ? newPOI : poi).toList();
+    }
+
     @Test
     void testOpenDirectory() throws IOException {
         // Make sure the content is the same as the sample file.
@@ -84,4 +121,243 @@ class DatabaseTest {
 
         assertEquals(stateFromFile, database.getCurrentState());
     }
+
+    @Test
+    void testSaveKeepsFilePermissions() throws IOException {
+        var databaseJsonPath = directory.resolve("database.json");
+        if (Files.getFileAttributeView(databaseJsonPath, PosixFileAttributeView.class) == null) {
+            // The file system doesn't have POSIX permissions to keep.
+            return;
+        }
+        var permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(databaseJsonPath, permissions);
+
+        // Adding an account can't be journaled, so database.json is replaced.
+        Database database = Database.openDirectory(directory);
+        var account = new Account("testUser", "testPassword", false);
+        database.getHistory()
+                .pushState(database.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, account)));
+        database.save();
+
+        assertEquals(permissions, Files.getPosixFilePermissions(databaseJsonPath));
+        try (var files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    void testSaveAppendsToJournal() throws IOException {
+        Database database = openJournaledDatabase();
+        var databaseJsonPath = directory.resolve("database.json");
+        var jsonBefore = Files.readString(databaseJsonPath);
+
+        var moved = getFirstPOI(database).withLocation(30, 40);
+        database.getHistory().pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+        database.save();
+
+        // The change should only be in the journal.
+        assertEquals(jsonBefore, Files.readString(databaseJsonPath));
+        assertTrue(Files.exists(directory.resolve("database.journal")));
+        assertEquals(database.getCurrentState(), Database.openDirectory(directory).getCurrentState());
+    }
+
+    @Test
+    void testSaveJournalsEveryKindOfChange() throws IOException {
+        Database database = openJournaledDatabase();
+        var account = database.getCurrentState().accounts().get(0);
+        var history = database.getHistory();
+
+        var first = getFirstPOI(database);
+        var second = new POI("Second", "", 5, 5, Set.of(), first.floor(), Layer.WASHROOMS, account);
+        history.pushState(database.getCurrentState().modifyPOIs(pois -> Lists.append(pois, second)));
+        database.save();
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> replace(pois, first, first.withName("Renamed").withDescription("new"))));
+        database.save();
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> replace(pois, second, second.withFavoriteOfAccount(account, true))));
+        database.save();
+        history.pushState(database.getCurrentState().modifyPOIs(pois -> pois.subList(1, 2)));
+        database.save();
+        // Undoing a change should journal the change back.
+        history.undo();
+        database.save();
+
+        assertEquals(database.getCurrentState(), Database.openDirectory(directory).getCurrentState());
+    }
+
+    @Test
+    void testSaveCompactsLargeJournal() throws IOException {
+        Database database = openJournaledDatabase();
+        var databaseJsonPath = directory.resolve("database.json");
+        var jsonBefore = Files.readString(databaseJsonPath);
+
+        // Move the POI until the journal is compacted into database.json.
+        var compacted = false;
+        for (int i = 0; i < 10000 && !compacted; i++) {
+            var moved = getFirstPOI(database).withLocation(i, i);
+            database.getHistory().pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+            database.save();
+            compacted = !jsonBefore.equals(Files.readString(databaseJsonPath));
+        }
+
+        assertTrue(compacted);
+        assertTrue(Files.size(directory.resolve("database.journal")) < Database.MIN_COMPACTION_SIZE);
+        assertEquals(database.getCurrentState(), Database.openDirectory(directory).getCurrentState());
+    }
+
+    @Test
+    void testOpenDirectoryIgnoresTornJournalLine() throws IOException {
+        Database database = openJournaledDatabase();
+        var moved = getFirstPOI(database).withLocation(30, 40);
+        database.getHistory().pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+        database.save();
+        var savedState = database.getCurrentState();
+
+        // Simulate the application stopping while a change was being written.
+        var journalPath = directory.resolve("database.journal");
+        Files.writeString(journalPath, "{\"op\":\"move\",\"index\":0,\"x\":", StandardOpenOption.APPEND);
+
+        var reopened = Database.openDirectory(directory);
+        assertEquals(savedState, reopened.getCurrentState());
+        // The damaged journal should be compacted right away.
+        assertEquals(savedState, Database.openDirectory(directory).getCurrentState());
+        assertTrue(Files.readString(journalPath).endsWith("\n"));
+    }
+
+    @Test
+    void testSaveAfterFailedAppendSurvivesReopen() throws IOException {
+        Database database = openJournaledDatabase();
+        var history = database.getHistory();
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> List.of(pois.get(0).withLocation(30, 40))));
+        database.save();
+
+        // Make appending to the journal, and resetting it, fail by putting a
+        // directory in its place.
+        var journalPath = directory.resolve("database.journal");
+        Files.delete(journalPath);
+        Files.createDirectory(journalPath);
+        var blocker = Files.createFile(journalPath.resolve("blocker"));
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> List.of(pois.get(0).withLocation(50, 60))));
+        assertThrows(IOException.class, database::save);
+        Files.delete(blocker);
+        Files.delete(journalPath);
+
+        // Later saves shouldn't be lost, even though the journal was damaged.
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> List.of(pois.get(0).withLocation(70, 80))));
+        database.save();
+        history.pushState(database.getCurrentState()
+                .modifyPOIs(pois -> List.of(pois.get(0).withName("Renamed"))));
+        database.save();
+
+        assertEquals(database.getCurrentState(), Database.openDirectory(directory).getCurrentState());
+    }
+
+    @Test
+    void testOpenDirectoryIgnoresJournalOfOtherSnapshot() throws IOException {
+        Database database = openJournaledDatabase();
+        var originalState = database.getCurrentState();
+        var moved = getFirstPOI(database).withLocation(30, 40);
+        database.getHistory().pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+        database.save();
+
+        // Change database.json without resetting the journal, as if it was
+        // rewritten but the application stopped before the journal was.
+        var databaseJsonPath = directory.resolve("database.json");
+        try (var outputStream = Files.newOutputStream(databaseJsonPath)) {
+            originalState.saveToStream(outputStream);
+        }
+        Files.writeString(databaseJsonPath, "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        var reopened = Database.openDirectory(directory);
+        assertEquals(originalState, reopened.getCurrentState());
+        assertNotEquals(database.getCurrentState(), reopened.getCurrentState());
+    }
+
+    @Test
+    void testSaveAsyncWritesLatestState() throws IOException {
+        Database database = openJournaledDatabase();
+        var history = database.getHistory();
+
+        var lastSave = CompletableFuture.<Void>completedFuture(null);
+        for (int i = 0; i < 100; i++) {
+            var moved = getFirstPOI(database).withLocation(i, i);
+            history.pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+            lastSave = database.saveAsync();
+        }
+        lastSave.join();
+
+        assertEquals(database.getCurrentState(), Database.openDirectory(directory).getCurrentState());
+        // Every temporary file should have been renamed or deleted.
+        try (var files = Files.list(directory)) {
+            assertEquals(
+                    Set.of(directory.resolve("database.json"), directory.resolve("database.journal")),
+                    files.collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void testSaveBinarySnapshot() throws IOException {
+        Database database = openJournaledDatabase();
+        assertEquals(SnapshotFormat.JSON, database.getSnapshotFormat());
+        database.setSnapshotFormat(SnapshotFormat.BINARY);
+
+        // Adding an account can't be journaled, so a snapshot is written.
+        var account = new Account("otherUser", "otherPassword", false);
+        database.getHistory()
+                .pushState(database.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, account)));
+        database.save();
+
+        assertTrue(Files.exists(directory.resolve("database.bin")));
+        var reopened = Database.openDirectory(directory);
+        assertEquals(SnapshotFormat.BINARY, reopened.getSnapshotFormat());
+        assertEquals(database.getCurrentState(), reopened.getCurrentState());
+    }
+
+    @Test
+    void testOpenDirectoryPrefersSnapshotOfJournal() throws IOException {
+        Database database = openJournaledDatabase();
+        database.setSnapshotFormat(SnapshotFormat.BINARY);
+        var account = new Account("otherUser", "otherPassword", false);
+        database.getHistory()
+                .pushState(database.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, account)));
+        database.save();
+        var moved = getFirstPOI(database).withLocation(30, 40);
+        database.getHistory().pushState(database.getCurrentState().modifyPOIs(pois -> List.of(moved)));
+        database.save();
+
+        // The stale JSON file being newer shouldn't matter, since the journal
+        // applies to the binary snapshot.
+        var binaryTime = Files.getLastModifiedTime(directory.resolve("database.bin"));
+        Files.setLastModifiedTime(
+                directory.resolve("database.json"), FileTime.fromMillis(binaryTime.toMillis() + 60_000));
+
+        var reopened = Database.openDirectory(directory);
+        assertEquals(SnapshotFormat.BINARY, reopened.getSnapshotFormat());
+        assertEquals(database.getCurrentState(), reopened.getCurrentState());
+    }
+
+    @Test
+    void testOpenDirectoryFallsBackFromDamagedSnapshot() throws IOException {
+        Database database = openJournaledDatabase();
+        var originalState = database.getCurrentState();
+        database.setSnapshotFormat(SnapshotFormat.COMPRESSED_BINARY);
+        var account = new Account("otherUser", "otherPassword", false);
+        database.getHistory()
+                .pushState(database.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, account)));
+        database.save();
+
+        // Damage the binary snapshot, which should leave the JSON file.
+        var binaryPath = directory.resolve("database.bin");
+        var bytes = Files.readAllBytes(binaryPath);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(binaryPath, bytes);
+
+        var reopened = Database.openDirectory(directory);
+        assertEquals(SnapshotFormat.JSON, reopened.getSnapshotFormat());
+        assertEquals(originalState, reopened.getCurrentState());
+    }
 }
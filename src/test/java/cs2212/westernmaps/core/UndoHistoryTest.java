@@ -119,6 +119,33 @@ public final class UndoHistoryTest {
         Assertions.assertEquals(state2, history.getCurrentState());
     }
 
+    @Test
+    public void testReplaceCurrentState() {
+        var state0 = DatabaseState.EMPTY;
+        var history = new UndoHistory(state0);
+
+        var asdfAccount = new Account("asdf", "", false);
+        var state1 = history.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, asdfAccount));
+        history.pushState(state1);
+        var hjklAccount = new Account("hjkl", "", true);
+        var state2 = history.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, hjklAccount));
+        history.pushState(state2);
+
+        // Go back to state1 and replace it, which should overwrite state2.
+        Assertions.assertTrue(history.undo());
+        var qwerAccount = new Account("qwer", "", true);
+        var state3 = history.getCurrentState().modifyAccounts(accounts -> Lists.append(accounts, qwerAccount));
+        history.replaceCurrentState(state3);
+        Assertions.assertEquals(state3, history.getCurrentState());
+        Assertions.assertFalse(history.redo());
+
+        // state1 was replaced rather than added to, so undo goes straight
+        // back to state0.
+        Assertions.assertTrue(history.undo());
+        Assertions.assertEquals(state0, history.getCurrentState());
+        Assertions.assertFalse(history.undo());
+    }
+
     @Test
     public void testReplaceHistoryWithState() {
         var state0 = DatabaseState.EMPTY;
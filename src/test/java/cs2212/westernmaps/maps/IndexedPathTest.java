@@ -0,0 +1,75 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class IndexedPathTest {
+    private static void addSquare(Path2D.Float path, float x, float y) {
+        path.moveTo(x, y);
+        path.lineTo(x + 10, y);
+        path.lineTo(x + 10, y + 10);
+        path.lineTo(x, y + 10);
+        path.closePath();
+    }
+
+    private static Path2D.Float createSquares(float... positions) {
+        var path = new Path2D.Float();
+        for (int i = 0; i < positions.length; i += 2) {
+            addSquare(path, positions[i], positions[i + 1]);
+        }
+        return path;
+    }
+
+    @Test
+    public void testSubpathCount() {
+        Assertions.assertEquals(0, new IndexedPath(new Path2D.Float()).getSubpathCount());
+        Assertions.assertEquals(1, new IndexedPath(createSquares(0, 0)).getSubpathCount());
+        Assertions.assertEquals(4, new IndexedPath(createSquares(0, 0, 100, 0, 0, 100, 100, 100)).getSubpathCount());
+    }
+
+    @Test
+    public void testAreaContainingPathReturnsWholePath() {
+        var path = createSquares(0, 0, 300, 300);
+        var index = new IndexedPath(path);
+
+        Assertions.assertSame(path, index.getPath());
+        Assertions.assertSame(path, index.getSubpaths(new Rectangle2D.Double(-10, -10, 400, 400)));
+    }
+
+    @Test
+    public void testCullingKeepsSubpathOrder() {
+        // The squares are added out of order, so that the subpaths in the
+        // top row aren't next to each other.
+        var index = new IndexedPath(createSquares(300, 0, 0, 300, 0, 0, 300, 300, 150, 0));
+        var topRow = index.getSubpaths(new Rectangle2D.Double(-5, -5, 400, 50));
+
+        Assertions.assertEquals(TestPaths.describe(createSquares(300, 0, 0, 0, 150, 0)), TestPaths.describe(topRow));
+    }
+
+    @Test
+    public void testCullingUsesSubpathBounds() {
+        var index = new IndexedPath(createSquares(0, 0, 300, 300));
+
+        // An area overlapping the corner of a square includes it.
+        Assertions.assertEquals(
+                TestPaths.describe(createSquares(300, 300)),
+                TestPaths.describe(index.getSubpaths(new Rectangle2D.Double(305, 305, 100, 100))));
+        // An area between the squares includes neither of them.
+        Assertions.assertEquals("", TestPaths.describe(index.getSubpaths(new Rectangle2D.Double(100, 100, 50, 50))));
+    }
+
+    @Test
+    public void testCulledCurvesKeptIntact() {
+        var path = createSquares(300, 300);
+        path.moveTo(0, 0);
+        path.curveTo(0, 10, 10, 10, 10, 0);
+        path.quadTo(5, -5, 0, 0);
+        var index = new IndexedPath(path);
+
+        Assertions.assertEquals(
+                "M 0 0 C 0 10 10 10 10 0 Q 5 -5 0 0",
+                TestPaths.describe(index.getSubpaths(new Rectangle2D.Double(-5, -5, 20, 20))));
+    }
+}
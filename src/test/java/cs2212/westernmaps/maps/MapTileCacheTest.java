@@ -0,0 +1,57 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class MapTileCacheTest {
+    private static final URI MAP_URI = URI.create("file:/maps/example.svg");
+
+    // Creates a grayscale image, which takes one byte per pixel.
+    private static BufferedImage createImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    private static MapTileCache.TileKey createKey(int column) {
+        return new MapTileCache.TileKey(MAP_URI, 1.0, 1.0, column, 0);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        var cache = new MapTileCache(300);
+        cache.put(createKey(0), createImage(10, 10));
+        cache.put(createKey(1), createImage(10, 10));
+        cache.put(createKey(2), createImage(10, 10));
+
+        // Using the first image makes the second the least recently used.
+        Assertions.assertNotNull(cache.get(createKey(0)));
+        cache.put(createKey(3), createImage(10, 10));
+
+        Assertions.assertTrue(cache.contains(createKey(0)));
+        Assertions.assertFalse(cache.contains(createKey(1)));
+        Assertions.assertTrue(cache.contains(createKey(2)));
+        Assertions.assertTrue(cache.contains(createKey(3)));
+        Assertions.assertEquals(300, cache.getStatistics().sizeBytes());
+        Assertions.assertEquals(1, cache.getStatistics().evictions());
+    }
+
+    @Test
+    public void testImageLargerThanBudgetKept() {
+        var cache = new MapTileCache(300);
+        cache.put(createKey(0), createImage(10, 10));
+        var level = new MapTileCache.LevelKey(MAP_URI, 1, 2.0);
+        var levelImage = createImage(100, 100);
+        cache.put(level, levelImage);
+
+        // The large image evicts everything else, but stays cached itself.
+        Assertions.assertSame(levelImage, cache.peek(level));
+        Assertions.assertFalse(cache.contains(createKey(0)));
+        Assertions.assertEquals(10000, cache.getStatistics().sizeBytes());
+
+        // It's evicted as soon as another image is added.
+        cache.put(createKey(1), createImage(10, 10));
+        Assertions.assertFalse(cache.contains(level));
+        Assertions.assertEquals(100, cache.getStatistics().sizeBytes());
+    }
+}
@@ -0,0 +1,87 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.geom.Path2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class PathSimplifierTest {
+    private static Path2D.Float createRectangle(float x, float y, float width, float height) {
+        var path = new Path2D.Float();
+        path.moveTo(x, y);
+        path.lineTo(x + width, y);
+        path.lineTo(x + width, y + height);
+        path.lineTo(x, y + height);
+        path.closePath();
+        return path;
+    }
+
+    private static String simplify(Path2D.Float path, double tolerance, double minSize) {
+        return TestPaths.describe(PathSimplifier.simplify(path, tolerance, minSize));
+    }
+
+    @Test
+    public void testSmallSubpathsDropped() {
+        var path = createRectangle(0, 0, 1, 1);
+        path.append(createRectangle(100, 100, 10, 10), false);
+        path.append(createRectangle(200, 200, 1.9f, 1.9f), false);
+
+        Assertions.assertEquals("M 100 100 L 110 100 L 110 110 L 100 110 Z", simplify(path, 0.1, 2));
+    }
+
+    @Test
+    public void testSizeThreshold() {
+        // Subpaths are kept if either their width or height is at least the
+        // minimum size.
+        Assertions.assertEquals("M 0 0 L 2 0 L 2 0.5 L 0 0.5 Z", simplify(createRectangle(0, 0, 2, 0.5f), 0.1, 2));
+        Assertions.assertEquals("M 0 0 L 0.5 0 L 0.5 2 L 0 2 Z", simplify(createRectangle(0, 0, 0.5f, 2), 0.1, 2));
+        Assertions.assertEquals("", simplify(createRectangle(0, 0, 1.5f, 1.5f), 0.1, 2));
+
+        var line = new Path2D.Float();
+        line.moveTo(0, 0);
+        line.lineTo(0, 5);
+        Assertions.assertEquals("M 0 0 L 0 5", simplify(line, 0.1, 2));
+        Assertions.assertEquals("", simplify(line, 0.1, 6));
+    }
+
+    @Test
+    public void testPointsWithinToleranceRemoved() {
+        var path = new Path2D.Float();
+        path.moveTo(0, 0);
+        path.lineTo(5, 0.05f);
+        path.lineTo(10, 0);
+        path.lineTo(15, 5);
+        path.lineTo(20, 0);
+
+        Assertions.assertEquals("M 0 0 L 10 0 L 15 5 L 20 0", simplify(path, 0.1, 0));
+        Assertions.assertEquals("M 0 0 L 20 0", simplify(path, 10, 0));
+    }
+
+    @Test
+    public void testCurvesFlattened() {
+        var path = new Path2D.Float();
+        path.moveTo(0, 0);
+        path.curveTo(0, 50, 100, 50, 100, 0);
+        path.quadTo(50, -50, 0, 0);
+        path.closePath();
+
+        var simplified = simplify(path, 0.5, 0);
+        Assertions.assertTrue(simplified.startsWith("M 0 0 L "));
+        Assertions.assertTrue(simplified.endsWith(" Z"));
+        Assertions.assertFalse(simplified.contains("C"));
+        Assertions.assertFalse(simplified.contains("Q"));
+        // The curves bulge out by 37.5 and 25, so they can't be simplified
+        // to a single line.
+        Assertions.assertTrue(simplified.split("L").length > 4);
+    }
+
+    @Test
+    public void testClosedAndOpenSubpathsKept() {
+        var path = createRectangle(0, 0, 10, 10);
+        path.lineTo(20, 0);
+        path.moveTo(50, 50);
+        path.lineTo(60, 60);
+
+        Assertions.assertEquals(
+                "M 0 0 L 10 0 L 10 10 L 0 10 Z M 0 0 L 20 0 M 50 50 L 60 60", simplify(path, 0.1, 2));
+    }
+}
@@ -0,0 +1,83 @@
+package cs2212.westernmaps.maps;
+
+import cs2212.westernmaps.core.DatabaseState;
+import cs2212.westernmaps.core.Floor;
+import cs2212.westernmaps.core.Layer;
+import cs2212.westernmaps.core.POI;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class PoiClusterIndexTest {
+    private static final Rectangle2D WHOLE_MAP = new Rectangle2D.Double(-1e6, -1e6, 2e6, 2e6);
+
+    private static POI createPoi(String name, int x, int y) {
+        var floor = new Floor("1", "First Floor", Path.of("maps/Example Building/First Floor.svg"));
+        return new POI(name, "", x, y, Set.of(), floor, Layer.CUSTOM, null);
+    }
+
+    // Gets the number of POIs that share a marker with another POI when the
+    // map is shown at a scale.
+    private static int countMergedPois(PoiClusterIndex index, double scale) {
+        if (!PoiClusterIndex.isClustered(scale)) {
+            return 0;
+        }
+        return index.getClustersInArea(PoiClusterIndex.getBand(scale), WHOLE_MAP).stream()
+                .mapToInt(PoiClusterIndex.Cluster::size)
+                .filter(size -> size > 1)
+                .sum();
+    }
+
+    @Test
+    public void testOnlyClusteredWhenZoomedOut() {
+        Assertions.assertTrue(PoiClusterIndex.isClustered(0.1));
+        Assertions.assertTrue(PoiClusterIndex.isClustered(0.99));
+        Assertions.assertFalse(PoiClusterIndex.isClustered(1.0));
+        Assertions.assertFalse(PoiClusterIndex.isClustered(2.0));
+        Assertions.assertFalse(PoiClusterIndex.isClustered(8.0));
+    }
+
+    @Test
+    public void testNoPoisMergedAtDefaultZoom() throws IOException {
+        DatabaseState state;
+        try (var inputStream = Files.newInputStream(Path.of("data/database.json"))) {
+            state = DatabaseState.loadFromStream(inputStream);
+        }
+
+        // POIs are only ever clustered with others on the same floor.
+        var poisByFloor = state.pois().stream().collect(Collectors.groupingBy(POI::floor));
+        for (var pois : poisByFloor.values()) {
+            var index = new PoiClusterIndex();
+            index.update(pois);
+            Assertions.assertEquals(0, countMergedPois(index, 1.0));
+        }
+    }
+
+    @Test
+    public void testNearbyPoisMergedWhenZoomedOut() {
+        var index = new PoiClusterIndex();
+        index.update(List.of(createPoi("A", 10, 10), createPoi("B", 20, 20), createPoi("C", 1000, 1000)));
+
+        Assertions.assertEquals(2, countMergedPois(index, 0.5));
+        Assertions.assertEquals(0, countMergedPois(index, 1.0));
+    }
+
+    @Test
+    public void testUpdateMovesPois() {
+        var first = createPoi("A", 10, 10);
+        var second = createPoi("B", 1000, 1000);
+        var index = new PoiClusterIndex();
+        index.update(List.of(first, second));
+        Assertions.assertEquals(0, countMergedPois(index, 0.5));
+
+        index.update(List.of(first, second.withLocation(20, 20)));
+        Assertions.assertEquals(2, countMergedPois(index, 0.5));
+        Assertions.assertEquals(2, index.getClustersInArea(-1, WHOLE_MAP).get(0).size());
+    }
+}
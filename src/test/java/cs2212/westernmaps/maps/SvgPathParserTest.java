@@ -0,0 +1,93 @@
+package cs2212.westernmaps.maps;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public final class SvgPathParserTest {
+    private static String parse(String data) throws IOException {
+        return TestPaths.describe(SvgPathParser.parse(data));
+    }
+
+    @Test
+    public void testAbsoluteCommands() throws IOException {
+        Assertions.assertEquals("M 10 20 L 30 40 L 50 40 L 50 60 Z", parse("M10 20 L30 40 H50 V60 Z"));
+        Assertions.assertEquals("M 0 0 Q 5 10 10 0 C 10 5 20 5 20 0", parse("M0,0 Q5,10 10,0 C10,5 20,5 20,0"));
+    }
+
+    @Test
+    public void testRelativeCommands() throws IOException {
+        Assertions.assertEquals("M 10 20 L 15 25 L 25 25 L 25 20 Z", parse("m10 20 l5 5 h10 v-5 z"));
+        Assertions.assertEquals("M 0 0 Q 5 10 10 0 C 10 5 20 5 20 0", parse("m0,0 q5,10 10,0 c0,5 10,5 10,0"));
+    }
+
+    @Test
+    public void testClosePathReturnsToStart() throws IOException {
+        // Relative coordinates after a close are offsets from the start of
+        // the closed subpath.
+        Assertions.assertEquals("M 10 10 L 20 10 Z M 15 15 L 15 20", parse("M10 10 h10 z m5 5 v5"));
+    }
+
+    @Test
+    public void testImplicitRepeats() throws IOException {
+        Assertions.assertEquals("M 0 0 L 10 0 L 10 10", parse("M0 0 10 0 10 10"));
+        Assertions.assertEquals("M 5 5 L 10 10 L 15 15", parse("m5 5 5 5 5 5"));
+        Assertions.assertEquals("M 0 0 L 1 1 L 2 2 L 2 3 L 2 5", parse("M0 0 L1 1 2 2 v1 2"));
+        Assertions.assertEquals("M 0 0 Q 1 1 2 0 Q 3 -1 4 0", parse("M0 0 q1 1 2 0 1 -1 2 0"));
+    }
+
+    @Test
+    public void testNumberFormats() throws IOException {
+        Assertions.assertEquals("M 0.5 -0.5 L 10 0.2", parse("M.5-.5L1e1,2E-1"));
+        Assertions.assertEquals("M 0.5 0.5 L 1 -2", parse("M0.5.5\n\tL+1-2"));
+    }
+
+    @Test
+    public void testSmoothCubicCurves() throws IOException {
+        // The first control point is the previous second control point,
+        // reflected around the current point.
+        Assertions.assertEquals(
+                "M 0 0 C 0 10 10 10 10 0 C 10 -10 20 -10 20 0", parse("M0 0 C0 10 10 10 10 0 S20 -10 20 0"));
+        Assertions.assertEquals(
+                "M 0 0 C 0 10 10 10 10 0 C 10 -10 20 -10 20 0 C 20 10 30 10 30 0",
+                parse("M0 0 c0 10 10 10 10 0 s10 -10 10 0 10 10 10 0"));
+
+        // Without a previous cubic curve, it is the current point.
+        Assertions.assertEquals("M 0 0 C 0 0 10 10 20 0", parse("M0 0 S10 10 20 0"));
+        Assertions.assertEquals("M 0 0 Q 5 5 10 0 C 10 0 15 5 20 0", parse("M0 0 Q5 5 10 0 S15 5 20 0"));
+    }
+
+    @Test
+    public void testSmoothQuadraticCurves() throws IOException {
+        Assertions.assertEquals("M 0 0 Q 5 10 10 0 Q 15 -10 20 0", parse("M0 0 Q5 10 10 0 T20 0"));
+        Assertions.assertEquals(
+                "M 0 0 Q 5 10 10 0 Q 15 -10 20 0 Q 25 10 30 0", parse("M0 0 q5 10 10 0 t10 0 10 0"));
+
+        // Without a previous quadratic curve, the control point is the
+        // current point.
+        Assertions.assertEquals("M 0 0 Q 0 0 10 0", parse("M0 0 T10 0"));
+        Assertions.assertEquals("M 0 0 C 0 5 10 5 10 0 Q 10 0 20 0", parse("M0 0 C0 5 10 5 10 0 T20 0"));
+    }
+
+    @Test
+    public void testEmptyPath() throws IOException {
+        Assertions.assertEquals("", parse(""));
+        Assertions.assertEquals("", parse(" \n "));
+    }
+
+    @Test
+    public void testArcsUnsupported() {
+        var exception = Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0 0 A5 5 0 0 1 10 0"));
+        Assertions.assertTrue(exception.getMessage().contains("Unsupported command 'A'"));
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0 0 a5 5 0 0 1 10 0"));
+    }
+
+    @Test
+    public void testMalformedData() {
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("10 10"));
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0 0 Z 10 10"));
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0"));
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0 0 L1e 1"));
+        Assertions.assertThrows(IOException.class, () -> SvgPathParser.parse("M0 0 L. 1"));
+    }
+}
@@ -0,0 +1,43 @@
+package cs2212.westernmaps.maps;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+
+// Helpers for comparing paths in tests.
+final class TestPaths {
+    private TestPaths() {}
+
+    // Describes the segments of a shape in SVG path syntax, using only
+    // absolute commands, so that paths can be compared as strings.
+    static String describe(Shape shape) {
+        var parts = new ArrayList<String>();
+        var coordinates = new float[6];
+        for (var iterator = shape.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            var type = iterator.currentSegment(coordinates);
+            var command =
+                    switch (type) {
+                        case PathIterator.SEG_MOVETO -> "M";
+                        case PathIterator.SEG_LINETO -> "L";
+                        case PathIterator.SEG_QUADTO -> "Q";
+                        case PathIterator.SEG_CUBICTO -> "C";
+                        default -> "Z";
+                    };
+            var coordinateCount =
+                    switch (type) {
+                        case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 2;
+                        case PathIterator.SEG_QUADTO -> 4;
+                        case PathIterator.SEG_CUBICTO -> 6;
+                        default -> 0;
+                    };
+
+            var part = new StringBuilder(command);
+            for (int i = 0; i < coordinateCount; i++) {
+                var value = coordinates[i];
+                part.append(' ').append(value == (int) value ? Integer.toString((int) value) : Float.toString(value));
+            }
+            parts.add(part.toString());
+        }
+        return String.join(" ", parts);
+    }
+}